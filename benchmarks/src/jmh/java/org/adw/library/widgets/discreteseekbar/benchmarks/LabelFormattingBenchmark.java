@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.benchmarks;
+
+import org.adw.library.widgets.discreteseekbar.internal.IntegerLabelFormatter;
+import org.adw.library.widgets.discreteseekbar.internal.LabelCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the indicator label for a new value (convertValueToMessage and friends).
+ * <p>
+ * The Formatter benchmark reproduces what DiscreteSeekBar does for formats the
+ * IntegerLabelFormatter can't handle, reusing the Formatter and its StringBuilder.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LabelFormattingBenchmark {
+    private static final int MAX = 10000;
+    //Small enough for the LabelCache to keep every label (dense mode)
+    private static final int DENSE_MAX = 1000;
+
+    @Param({"%d", "%d%%", "%d ms"})
+    public String format;
+
+    private Formatter mFormatter;
+    private StringBuilder mFormatBuilder;
+    private IntegerLabelFormatter mIntegerFormatter;
+    private LabelCache mWarmCache;
+    private LabelCache mSparseCache;
+    private int mValue;
+    private int mDenseValue;
+
+    @Setup
+    public void setup() {
+        mFormatBuilder = new StringBuilder();
+        mFormatter = new Formatter(mFormatBuilder, Locale.getDefault());
+        mIntegerFormatter = IntegerLabelFormatter.compile(format, Locale.getDefault());
+        mWarmCache = new LabelCache(0, DENSE_MAX);
+        for (int i = 0; i <= DENSE_MAX; i++) {
+            mWarmCache.put(i, mIntegerFormatter.formatToString(i));
+        }
+        mSparseCache = new LabelCache(0, MAX);
+        for (int i = 0; i <= MAX; i++) {
+            mSparseCache.put(i, mIntegerFormatter.formatToString(i));
+        }
+    }
+
+    private int nextValue() {
+        mValue = (mValue + 17) % (MAX + 1);
+        return mValue;
+    }
+
+    private int nextDenseValue() {
+        mDenseValue = (mDenseValue + 17) % (DENSE_MAX + 1);
+        return mDenseValue;
+    }
+
+    @Benchmark
+    public String formatter() {
+        mFormatBuilder.setLength(0);
+        return mFormatter.format(format, nextValue()).toString();
+    }
+
+    @Benchmark
+    public String integerFormatterToString() {
+        return mIntegerFormatter.formatToString(nextValue());
+    }
+
+    /**
+     * The path used when the label goes straight into the TextView buffer
+     */
+    @Benchmark
+    public int integerFormatterToBuffer() {
+        mIntegerFormatter.format(nextValue());
+        return mIntegerFormatter.length();
+    }
+
+    /**
+     * Every value is in the cache
+     */
+    @Benchmark
+    public String labelCacheHit() {
+        return mWarmCache.get(nextDenseValue());
+    }
+
+    /**
+     * Big ranges share a few slots, so jumping around the range mostly misses because
+     * another value took the slot: the label is formatted and stored again
+     */
+    @Benchmark
+    public String labelCacheSparseCollision() {
+        final int value = nextValue();
+        String label = mSparseCache.get(value);
+        if (label == null) {
+            label = mIntegerFormatter.formatToString(value);
+            mSparseCache.put(value, label);
+        }
+        return label;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.benchmarks;
+
+import org.adw.library.widgets.discreteseekbar.ValueScale;
+import org.adw.library.widgets.discreteseekbar.internal.ScaleLookup;
+import org.adw.library.widgets.discreteseekbar.internal.SeekBarMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value&lt;-&gt;pixel mapping done on every drag event (updateDragging) and thumb update
+ * (updateThumbPosFromCurrentProgress), for the linear math and the non linear lookup tables.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PositionMappingBenchmark {
+    //Typical track width on a phone
+    private static final int AVAILABLE = 1000;
+
+    @Param({"100", "10000", "1000000"})
+    public int max;
+
+    private ScaleLookup mLogLookup;
+    private ValueScale mLogScale;
+    private int mPosition;
+    private int mValue;
+
+    @Setup
+    public void setup() {
+        mLogScale = ValueScale.logarithmic();
+        mLogLookup = new ScaleLookup(mLogScale);
+        mLogLookup.update(1, max, AVAILABLE);
+    }
+
+    private int nextPosition() {
+        mPosition = (mPosition + 7) % (AVAILABLE + 1);
+        return mPosition;
+    }
+
+    private int nextValue() {
+        mValue = (mValue + 13) % max + 1;
+        return mValue;
+    }
+
+    @Benchmark
+    public int linearProgressAtPosition() {
+        return SeekBarMath.progressAtPosition(nextPosition(), AVAILABLE, 1, max, false);
+    }
+
+    @Benchmark
+    public int linearPositionOfProgress() {
+        return SeekBarMath.positionOfProgress(nextValue(), 1, max, AVAILABLE);
+    }
+
+    @Benchmark
+    public int lookupValueAt() {
+        return mLogLookup.valueAt(nextPosition());
+    }
+
+    @Benchmark
+    public float lookupPixelOf() {
+        return mLogLookup.pixelOf(nextValue());
+    }
+
+    /**
+     * What the lookup tables save on every move event
+     */
+    @Benchmark
+    public float scaleToValue() {
+        return mLogScale.toValue((float) nextPosition() / AVAILABLE, 1, max);
+    }
+
+    @Benchmark
+    public boolean lookupRebuild() {
+        //Force a rebuild alternating the width
+        return mLogLookup.update(1, max, AVAILABLE + (mPosition++ & 1));
+    }
+}
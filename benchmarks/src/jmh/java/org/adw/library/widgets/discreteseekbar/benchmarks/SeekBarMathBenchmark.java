@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.benchmarks;
+
+import org.adw.library.widgets.discreteseekbar.internal.SeekBarMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rest of the plain math: marker geometry (MarkerDrawable.computePath),
+ * color blending (MarkerDrawable.blendColors) and the key increment heuristics (updateKeyboardRange).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SeekBarMathBenchmark {
+    private final float[] mGeometry = new float[SeekBarMath.MARKER_GEOMETRY_SIZE];
+    private int mStep;
+
+    private float nextScale() {
+        mStep = (mStep + 1) & 31;
+        return mStep / 31f;
+    }
+
+    @Benchmark
+    public float[] markerGeometry() {
+        SeekBarMath.markerGeometry(96, 96, 96, 24, 0, nextScale(), mGeometry);
+        return mGeometry;
+    }
+
+    @Benchmark
+    public int blendColors() {
+        return SeekBarMath.blendColors(0xff009688, 0xffff4081, nextScale());
+    }
+
+    @Benchmark
+    public int keyProgressIncrement() {
+        mStep = (mStep + 1) & 1023;
+        return SeekBarMath.keyProgressIncrement(1, mStep * 97);
+    }
+}
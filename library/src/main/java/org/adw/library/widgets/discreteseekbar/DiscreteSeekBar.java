@@ -21,10 +21,12 @@ import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
@@ -39,17 +41,44 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewParent;
+import android.view.WindowManager;
 
+import org.adw.library.widgets.discreteseekbar.internal.DragTracker;
+import org.adw.library.widgets.discreteseekbar.internal.IndicatorPool;
+import org.adw.library.widgets.discreteseekbar.internal.IntegerLabelFormatter;
+import org.adw.library.widgets.discreteseekbar.internal.LabelCache;
 import org.adw.library.widgets.discreteseekbar.internal.PopupIndicator;
+import org.adw.library.widgets.discreteseekbar.internal.ProgressChangeBuffer;
+import org.adw.library.widgets.discreteseekbar.internal.PublishedState;
+import org.adw.library.widgets.discreteseekbar.internal.ScaleLookup;
+import org.adw.library.widgets.discreteseekbar.internal.SeekBarMath;
+import org.adw.library.widgets.discreteseekbar.internal.ThumbPredictor;
+import org.adw.library.widgets.discreteseekbar.internal.WidestLabel;
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
 import org.adw.library.widgets.discreteseekbar.internal.compat.AnimatorCompat;
 import org.adw.library.widgets.discreteseekbar.internal.compat.SeekBarCompat;
+import org.adw.library.widgets.discreteseekbar.internal.compat.TraceCompat;
 import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
+import org.adw.library.widgets.discreteseekbar.internal.drawable.StaticLayerCache;
 import org.adw.library.widgets.discreteseekbar.internal.drawable.ThumbDrawable;
+import org.adw.library.widgets.discreteseekbar.internal.drawable.TrackDotsDrawable;
 import org.adw.library.widgets.discreteseekbar.internal.drawable.TrackRectDrawable;
 
 import java.util.Formatter;
 import java.util.Locale;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Material design discrete slider.
+ * <p>
+ * Like any other View, it must only be used from the UI thread.
+ * The only exceptions are {@link #postProgress(int)}, {@link #readProgressState(ProgressState)}
+ * and {@link #getDroppedProgressChangeCount()}, which can be called from any thread,
+ * and {@link #drainProgressChanges(long[], int[])}, which can be called from one other thread.
+ * </p>
+ */
 public class DiscreteSeekBar extends View {
 
     /**
@@ -70,6 +99,25 @@ public class DiscreteSeekBar extends View {
         void onStopTrackingTouch(DiscreteSeekBar seekBar);
     }
 
+    /**
+     * Interface to know when the {@link DiscreteSeekBar} value stops changing
+     */
+    public interface OnProgressSettledListener {
+        /**
+         * When the {@link DiscreteSeekBar} value settles, that is, after the user stops dragging,
+         * the progress animation finishes or the progress is set programmatically.
+         * <p>
+         * It's always called after the last {@link OnProgressChangeListener#onProgressChanged(DiscreteSeekBar, int, boolean)}
+         * for the change.
+         * </p>
+         *
+         * @param seekBar  The DiscreteSeekBar
+         * @param value    the final value
+         * @param fromUser if the last change was made from the user or not
+         */
+        void onProgressSettled(DiscreteSeekBar seekBar, int value, boolean fromUser);
+    }
+
     /**
      * Interface to transform the current internal value of this DiscreteSeekBar to anther one for the visualization.
      * <p/>
@@ -113,6 +161,165 @@ public class DiscreteSeekBar extends View {
     }
 
 
+    /**
+     * Receives performance measurements of a {@link DiscreteSeekBar}.
+     * <p>
+     * Every method is called on the UI thread, right after the measured operation,
+     * so implementations should just aggregate the numbers and return quickly.
+     * Override only the ones you need. Nothing is measured when there's no sink installed.
+     * </p>
+     *
+     * @see #setMetricsSink(DiscreteSeekBar.MetricsSink)
+     */
+    public static abstract class MetricsSink {
+        /**
+         * @param durationNanos time spent on {@link DiscreteSeekBar#onDraw(Canvas)}
+         */
+        public void onDraw(DiscreteSeekBar seekBar, long durationNanos) {
+        }
+
+        /**
+         * The thumb moved and part of the DiscreteSeekBar was invalidated
+         *
+         * @param dirtyArea the area of the invalidated rect, in pixels
+         */
+        public void onInvalidate(DiscreteSeekBar seekBar, int dirtyArea) {
+        }
+
+        /**
+         * @param durationNanos time spent building the indicator label for a new value
+         */
+        public void onLabelFormatted(DiscreteSeekBar seekBar, long durationNanos) {
+        }
+
+        /**
+         * @param durationNanos time spent adding the indicator to the Window (or the overlay)
+         */
+        public void onIndicatorAdded(DiscreteSeekBar seekBar, long durationNanos) {
+        }
+
+        /**
+         * @param durationNanos time spent removing the indicator from the Window (or the overlay)
+         */
+        public void onIndicatorRemoved(DiscreteSeekBar seekBar, long durationNanos) {
+        }
+
+        /**
+         * A progress animation frame was produced, that is, while the thumb animates to a new value
+         * after a keyboard (D-pad) press.
+         * <p>
+         * The thumb, ripple and indicator animations are not reported.
+         * </p>
+         *
+         * @param droppedFrames the frames missed since the previous animation frame, according to the display refresh rate
+         */
+        public void onAnimationFrame(DiscreteSeekBar seekBar, int droppedFrames) {
+        }
+
+        /**
+         * @param durationNanos time spent on the {@link OnProgressChangeListener} and {@link #onValueChanged(int)}
+         */
+        public void onListenerDispatch(DiscreteSeekBar seekBar, long durationNanos) {
+        }
+    }
+
+    /**
+     * Batch of changes to the range, value and formatting of a {@link DiscreteSeekBar},
+     * obtained with {@link #edit()}.
+     * <p>
+     * Nothing changes until {@link #apply()} is called. Then the final state is validated once
+     * and everything that depends on it (keyboard increments, dots, indicator size, label...) is updated
+     * at most once, with a single progress notification.
+     * Unlike calling the setters one by one, the value is never clamped to an intermediate range.
+     * </p>
+     * <pre>
+     * seekBar.edit()
+     *         .setMin(-50)
+     *         .setMax(50)
+     *         .setProgress(0)
+     *         .setIndicatorFormatter("%d%%")
+     *         .apply();
+     * </pre>
+     * <p>
+     * Each DiscreteSeekBar always returns the same Editor, so don't keep it around after {@link #apply()}.
+     * </p>
+     */
+    public static final class Editor {
+        private final DiscreteSeekBar mSeekBar;
+        private int mMin;
+        private int mMax;
+        private int mProgress;
+        private boolean mProgressSet;
+        private String mFormatter;
+        private boolean mFormatterSet;
+        private NumericTransformer mTransformer;
+        private boolean mTransformerSet;
+
+        private Editor(DiscreteSeekBar seekBar) {
+            mSeekBar = seekBar;
+        }
+
+        private void reset() {
+            mMin = mSeekBar.mMin;
+            mMax = mSeekBar.mMax;
+            mProgressSet = false;
+            mFormatter = null;
+            mFormatterSet = false;
+            mTransformer = null;
+            mTransformerSet = false;
+        }
+
+        public Editor setMin(int min) {
+            mMin = min;
+            return this;
+        }
+
+        public Editor setMax(int max) {
+            mMax = max;
+            return this;
+        }
+
+        /**
+         * The progress will be capped to the final MIN-MAX range.
+         * If not set, the current progress is kept, or set to MIN if it's out of the final range
+         */
+        public Editor setProgress(int progress) {
+            mProgress = progress;
+            mProgressSet = true;
+            return this;
+        }
+
+        /**
+         * @see DiscreteSeekBar#setIndicatorFormatter(String)
+         */
+        public Editor setIndicatorFormatter(@Nullable String formatter) {
+            mFormatter = formatter;
+            mFormatterSet = true;
+            return this;
+        }
+
+        /**
+         * @see DiscreteSeekBar#setNumericTransformer(DiscreteSeekBar.NumericTransformer)
+         */
+        public Editor setNumericTransformer(@Nullable NumericTransformer transformer) {
+            mTransformer = transformer;
+            mTransformerSet = true;
+            return this;
+        }
+
+        /**
+         * Applies all the changes at once
+         *
+         * @throws IllegalArgumentException if MIN is bigger than MAX
+         */
+        public void apply() {
+            if (mMin > mMax) {
+                throw new IllegalArgumentException("min (" + mMin + ") can't be bigger than max (" + mMax + ")");
+            }
+            mSeekBar.applyEdit(this);
+        }
+    }
+
     private static class DefaultNumericTransformer extends NumericTransformer {
 
         @Override
@@ -121,6 +328,9 @@ public class DiscreteSeekBar extends View {
         }
     }
 
+    //Shared by every DiscreteSeekBar, so they also share the cached widest label
+    private static final NumericTransformer DEFAULT_TRANSFORMER = new DefaultNumericTransformer();
+
 
     private static final boolean isLollipopOrGreater = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
     //We want to always use a formatter so the indicator numbers are "translated" to specific locales.
@@ -132,23 +342,41 @@ public class DiscreteSeekBar extends View {
     private static final int INDICATOR_DELAY_FOR_TAPS = 150;
     private static final int DEFAULT_THUMB_COLOR = 0xff009688;
     private static final int SEPARATION_DP = 5;
+    private static final int DOTS_GAP_DP = 2;
+    private static final int INDICATOR_ELEVATION_DP = 8;
+    private static final int NO_DRAG_X = Integer.MIN_VALUE;
+    //Trace section names
+    private static final String TRACE_DRAW = "DiscreteSeekBar#onDraw";
+    private static final String TRACE_TOUCH = "DiscreteSeekBar#onTouchEvent";
+    private static final String TRACE_DRAGGING = "DiscreteSeekBar#updateDragging";
+    private static final String TRACE_SET_PROGRESS = "DiscreteSeekBar#setProgress";
+    private static final String TRACE_INDICATOR_SIZES = "DiscreteSeekBar#updateIndicatorSizes";
+    private static final String TRACE_APPLY_EDIT = "DiscreteSeekBar#applyEdit";
+    private static final String TRACE_DRAG_SESSION = "DiscreteSeekBar:drag";
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final int SCROLLING_CONTAINER_UNKNOWN = 0;
+    private static final int SCROLLING_CONTAINER_YES = 1;
+    private static final int SCROLLING_CONTAINER_NO = 2;
     private ThumbDrawable mThumb;
     private TrackRectDrawable mTrack;
     private TrackRectDrawable mScrubber;
     private Drawable mRipple;
+    private TrackDotsDrawable mDots;
+    //Recorded copy of the track and dots, only used if enabled
+    private StaticLayerCache mStaticLayerCache;
 
     private int mTrackHeight;
     private int mScrubberHeight;
     private int mAddedTouchBounds;
 
     private boolean mDotsEnabled;
-    private int mDotColor;
-    private float mDotSize;
 
     private int mMax;
     private int mMin;
     private int mValue;
     private int mKeyProgressIncrement = 1;
+    //Lookup tables for non linear scales, null if linear
+    private ScaleLookup mScaleLookup;
     private boolean mMirrorForRtl = false;
     private boolean mAllowTrackClick = true;
     private boolean mIndicatorPopupEnabled = true;
@@ -157,21 +385,87 @@ public class DiscreteSeekBar extends View {
     private String mIndicatorFormatter;
     private NumericTransformer mNumericTransformer;
     private StringBuilder mFormatBuilder;
+    //Compiled version of simple formats ("%d", "%d%%", "%d ms"...) to avoid using the Formatter at all
+    private IntegerLabelFormatter mIntegerFormatter;
+    //We already tried to compile the current format (mIntegerFormatter will be null if it's not supported)
+    private boolean mIntegerFormatterCompiled;
+    //Optional cache of the already formatted indicator labels
+    private LabelCache mLabelCache;
     private OnProgressChangeListener mPublicChangeListener;
+    private OnProgressSettledListener mSettledListener;
+    //Coalesced mode: progress changes are dispatched once per frame with the last value
+    private boolean mCoalesceProgressChanges;
+    private boolean mProgressChangePending;
+    private int mPendingProgress;
+    private boolean mLastChangeFromUser;
+    private boolean mSettlePending;
+    private boolean mProgressDispatcherScheduled;
+    //Optional performance metrics, nothing is measured if null
+    private MetricsSink mMetricsSink;
+    //Display frame interval, 0 until we need it
+    private long mFrameIntervalNanos;
+    private long mLastAnimationFrameNanos;
+    private long mProgressChangeCount;
+    private long mCoalescedProgressChangeCount;
     private boolean mIsDragging;
+    private boolean mDragTraced;
     private int mDragOffset;
+    //Last x we computed the progress for while dragging
+    private int mLastDragX = NO_DRAG_X;
+    private final DragTracker mDragTracker = new DragTracker();
+    //Only set when the thumb prediction is enabled
+    private ThumbPredictor mThumbPredictor;
+    //Cached while attached, as our parents can't change without detaching us
+    private int mScrollingContainerState = SCROLLING_CONTAINER_UNKNOWN;
 
     private Rect mInvalidateRect = new Rect();
+    private Rect mTrackClipRect = new Rect();
     private Rect mTempRect = new Rect();
+    //The indicator is only created when it's about to be shown for the first time
     private PopupIndicator mIndicator;
+    //Resolved attributes needed to create the indicator
+    private int mIndicatorTextAppearance;
+    private ColorStateList mIndicatorColor;
+    private float mIndicatorElevation;
+    private int mIndicatorThumbSize;
+    private int mIndicatorSeparation;
+    //Indicator settings we need to keep until it's created
+    private int mIndicatorStartColor;
+    private int mIndicatorEndColor;
+    private boolean mIndicatorOverlayEnabled;
+    private boolean mIndicatorCompactWindowEnabled;
+    //Shared indicator mode: mIndicator is only set while we hold the lease from the IndicatorPool
+    private boolean mSharedIndicatorEnabled;
+    private IBinder mIndicatorPoolToken;
+    //Reused on every edit()
+    private Editor mEditor;
+    //Latest value from postProgress, written from any thread: its sequence number in the high 32 bits
+    private final AtomicLong mPostedProgress = new AtomicLong();
+    private final AtomicInteger mPostedProgressSequence = new AtomicInteger();
+    //Values posted up to this sequence number are older than the last synchronous setProgress
+    private int mPostedProgressInvalidated;
+    //Set from the postProgress until the frame applying the posted value
+    private final AtomicBoolean mPostedProgressScheduled = new AtomicBoolean();
+    //Copy of the state for other threads
+    private final PublishedState mPublishedState = new PublishedState();
+    //Optional buffer of the changes for a consumer thread
+    private volatile ProgressChangeBuffer mProgressChangeBuffer;
+    //Growing range mode: setMax only resizes the indicator when the label width bucket changes
+    private boolean mGrowingRangeEnabled;
+    private int mLabelWidthBucket;
+    //Label lengths of MIN and MAX with string transforms, only built again when they (or the transformer) change
+    private int mLengthsMin;
+    private int mLengthsMax;
+    private int mMinLabelLength = -1;
+    private int mMaxLabelLength = -1;
+    //The indicator needs to be resized once it's closed
+    private boolean mIndicatorSizesPending;
     private AnimatorCompat mPositionAnimator;
     private float mAnimationPosition;
     private int mAnimationTarget;
     private float mDownX;
     private float mTouchSlop;
 
-    private final Paint mDotsPaint = new Paint();
-
     public DiscreteSeekBar(Context context) {
         this(context, null);
     }
@@ -239,8 +533,12 @@ public class DiscreteSeekBar extends View {
         mMax = Math.max(min + 1, max);
         mValue = Math.max(min, Math.min(max, value));
         updateKeyboardRange();
+        publishState();
 
         mIndicatorFormatter = a.getString(R.styleable.DiscreteSeekBar_dsb_indicatorFormatter);
+        if (a.getBoolean(R.styleable.DiscreteSeekBar_dsb_indicatorLabelCacheEnabled, false)) {
+            mLabelCache = new LabelCache(mMin, mMax);
+        }
 
         ColorStateList trackColor = a.getColorStateList(R.styleable.DiscreteSeekBar_dsb_trackColor);
         ColorStateList progressColor = a.getColorStateList(R.styleable.DiscreteSeekBar_dsb_progressColor);
@@ -277,18 +575,34 @@ public class DiscreteSeekBar extends View {
 
 
         mDotsEnabled = a.getBoolean(R.styleable.DiscreteSeekBar_dsb_dotsEnabled, false);
-        mDotColor = a.getColor(R.styleable.DiscreteSeekBar_dsb_dotColor, Color.DKGRAY);
-        mDotSize = a.getDimension(R.styleable.DiscreteSeekBar_dsb_dotSize, mTrackHeight + 10);
+        if (mDotsEnabled) {
+            int dotColor = a.getColor(R.styleable.DiscreteSeekBar_dsb_dotColor, Color.DKGRAY);
+            float dotSize = a.getDimension(R.styleable.DiscreteSeekBar_dsb_dotSize, mTrackHeight + 10);
+            //Dots closer than this would just look like a solid line
+            float minSpacing = dotSize * 2 + DOTS_GAP_DP * density;
+            mDots = new TrackDotsDrawable(ColorStateList.valueOf(dotColor), dotSize, minSpacing);
+            mDots.setSteps(mMax - mMin);
+            mDots.setCallback(this);
+        }
 
 
-        if (!editMode) {
-            mIndicator = new PopupIndicator(context, attrs, defStyleAttr, convertValueToMessage(mMax),
-                    thumbSize, thumbSize + mAddedTouchBounds + separation);
-            mIndicator.setListener(mFloaterListener);
+        //We just keep what we need to create the indicator later, if it's ever shown
+        mIndicatorTextAppearance = a.getResourceId(R.styleable.DiscreteSeekBar_dsb_indicatorTextAppearance,
+                R.style.Widget_DiscreteIndicatorTextAppearance);
+        mIndicatorColor = a.getColorStateList(R.styleable.DiscreteSeekBar_dsb_indicatorColor);
+        if (mIndicatorColor != null) {
+            //The same defaults MarkerDrawable uses
+            mIndicatorStartColor = mIndicatorColor.getColorForState(new int[]{android.R.attr.state_enabled, PRESSED_STATE},
+                    mIndicatorColor.getDefaultColor());
+            mIndicatorEndColor = mIndicatorColor.getDefaultColor();
         }
+        mIndicatorElevation = a.getDimension(R.styleable.DiscreteSeekBar_dsb_indicatorElevation,
+                INDICATOR_ELEVATION_DP * density);
+        mIndicatorThumbSize = thumbSize;
+        mIndicatorSeparation = thumbSize + mAddedTouchBounds + separation;
         a.recycle();
 
-        setNumericTransformer(new DefaultNumericTransformer());
+        setNumericTransformer(DEFAULT_TRANSFORMER);
 
     }
 
@@ -301,6 +615,8 @@ public class DiscreteSeekBar extends View {
      */
     public void setIndicatorFormatter(@Nullable String formatter) {
         mIndicatorFormatter = formatter;
+        mIntegerFormatterCompiled = false;
+        resetLabelCache();
         updateProgressMessage(mValue);
     }
 
@@ -311,7 +627,9 @@ public class DiscreteSeekBar extends View {
      * @see #getNumericTransformer()
      */
     public void setNumericTransformer(@Nullable NumericTransformer transformer) {
-        mNumericTransformer = transformer != null ? transformer : new DefaultNumericTransformer();
+        mNumericTransformer = transformer != null ? transformer : DEFAULT_TRANSFORMER;
+        mMinLabelLength = mMaxLabelLength = -1;
+        resetLabelCache();
         //We need to refresh the PopupIndicator view
         updateIndicatorSizes();
         updateProgressMessage(mValue);
@@ -339,25 +657,109 @@ public class DiscreteSeekBar extends View {
      * @param max
      * @see #setMin(int)
      * @see #setProgress(int)
+     * @see #setGrowingRangeEnabled(boolean)
      */
     public void setMax(int max) {
+        if (mGrowingRangeEnabled && max >= mMin) {
+            growMax(max);
+            return;
+        }
         mMax = max;
         if (mMax < mMin) {
             setMin(mMax - 1);
         }
         updateKeyboardRange();
+        updateDotsSteps();
+        resetLabelCache();
 
         if (mValue < mMin || mValue > mMax) {
             setProgress(mMin);
         }
         //We need to refresh the PopupIndicator view
         updateIndicatorSizes();
+        publishState();
     }
 
     public int getMax() {
         return mMax;
     }
 
+    /**
+     * If {@code enabled} is true, {@link #setMax(int)} is optimized for a MAX that keeps changing
+     * several times per second, like the length of a media or a log stream.
+     * <p>
+     * In this mode, {@link #setMax(int)} only updates the mapping between values and positions and the thumb position.
+     * The indicator is only measured again when the label width bucket (its amount of characters) changes,
+     * and if it's showing that is delayed until it closes, so it's never dismissed under the user's finger.
+     * Until then, labels wider than the ones it was measured for may be clipped.
+     * While dragging, the thumb stays under the finger and the progress follows the new range.
+     * Those changes are reported with {@code fromUser} false, as the user didn't move the thumb.
+     * Values bigger than the new MAX are capped to it instead of being set to MIN. By default it's disabled.
+     * </p>
+     */
+    public void setGrowingRangeEnabled(boolean enabled) {
+        mGrowingRangeEnabled = enabled;
+        if (enabled) {
+            mLabelWidthBucket = getLabelWidthBucket();
+        }
+    }
+
+    private void growMax(int max) {
+        mMax = max;
+        updateKeyboardRange();
+        updateDotsSteps();
+        resetLabelCache();
+        if (isDragging() && mLastDragX != NO_DRAG_X) {
+            //The thumb stays under the finger, the progress changes.
+            //It's the range that moved, not the user, so it's reported as not coming from the user
+            setProgress(getProgressAtDragX(mLastDragX), false);
+        } else if (mValue > mMax) {
+            setProgress(mMax, false);
+        }
+        updateThumbPosFromCurrentProgress();
+
+        int bucket = getLabelWidthBucket();
+        if (bucket != mLabelWidthBucket) {
+            if (mIndicator != null && mIndicator.isShowing()) {
+                mIndicatorSizesPending = true;
+            } else {
+                updateIndicatorSizes();
+            }
+        }
+        publishState();
+    }
+
+    /**
+     * @return the amount of characters of the biggest label
+     */
+    private int getLabelWidthBucket() {
+        final NumericTransformer transformer = mNumericTransformer;
+        if (transformer.useStringTransform()) {
+            //Labels can only be measured by building them, but just when MIN or MAX changed
+            if (mMinLabelLength < 0 || mLengthsMin != mMin) {
+                mLengthsMin = mMin;
+                mMinLabelLength = transformer.transformToString(mMin).length();
+            }
+            if (mMaxLabelLength < 0 || mLengthsMax != mMax) {
+                mLengthsMax = mMax;
+                mMaxLabelLength = transformer.transformToString(mMax).length();
+            }
+            return Math.max(mMinLabelLength, mMaxLabelLength);
+        }
+        return Math.max(countChars(transformer.transform(mMin)), countChars(transformer.transform(mMax)));
+    }
+
+    /**
+     * @return the amount of characters of the value, including the sign. Works for the whole int range
+     */
+    private static int countChars(int value) {
+        int chars = value < 0 ? 2 : 1;
+        for (int i = value / 10; i != 0; i /= 10) {
+            chars++;
+        }
+        return chars;
+    }
+
     /**
      * Sets the minimum value for this DiscreteSeekBar
      * if the supplied argument is bigger than the Current MAX value,
@@ -376,16 +778,100 @@ public class DiscreteSeekBar extends View {
             setMax(mMin + 1);
         }
         updateKeyboardRange();
+        updateDotsSteps();
+        resetLabelCache();
 
         if (mValue < mMin || mValue > mMax) {
             setProgress(mMin);
         }
+        publishState();
     }
 
     public int getMin() {
         return mMin;
     }
 
+    /**
+     * Starts a batch of changes to the range, value and formatting. Nothing changes until
+     * {@link Editor#apply()} is called.
+     * <p>
+     * Use this instead of the individual setters when changing more than one of them,
+     * like when binding list items, so the derived state is only updated once.
+     * </p>
+     *
+     * @return the Editor, with the current MIN and MAX
+     */
+    public Editor edit() {
+        if (mEditor == null) {
+            mEditor = new Editor(this);
+        }
+        mEditor.reset();
+        return mEditor;
+    }
+
+    private void applyEdit(Editor editor) {
+        TraceCompat.beginSection(TRACE_APPLY_EDIT);
+        try {
+            final boolean rangeChanged = editor.mMin != mMin || editor.mMax != mMax;
+            mMin = editor.mMin;
+            mMax = editor.mMax;
+            final boolean formatterChanged = editor.mFormatterSet;
+            if (formatterChanged) {
+                mIndicatorFormatter = editor.mFormatter;
+                mIntegerFormatterCompiled = false;
+            }
+            final boolean transformerChanged = editor.mTransformerSet;
+            if (transformerChanged) {
+                mNumericTransformer = editor.mTransformer != null ? editor.mTransformer : DEFAULT_TRANSFORMER;
+                mMinLabelLength = mMaxLabelLength = -1;
+            }
+
+            int value = mValue;
+            if (editor.mProgressSet) {
+                invalidatePostedProgress();
+                value = Math.max(mMin, Math.min(mMax, editor.mProgress));
+            } else if (value < mMin || value > mMax) {
+                value = mMin;
+            }
+
+            if (rangeChanged) {
+                updateKeyboardRange();
+                updateDotsSteps();
+            }
+            if (rangeChanged || formatterChanged || transformerChanged) {
+                resetLabelCache();
+            }
+            if (rangeChanged || transformerChanged) {
+                //We need to refresh the PopupIndicator view
+                updateIndicatorSizes();
+            }
+
+            boolean valueChanged = value != mValue;
+            if (editor.mProgressSet || valueChanged) {
+                mLastDragX = NO_DRAG_X;
+                if (isAnimationRunning()) {
+                    mPositionAnimator.cancel();
+                }
+            }
+            mValue = value;
+            if (valueChanged) {
+                notifyProgress(value, false);
+            }
+            if (valueChanged || formatterChanged || transformerChanged) {
+                updateProgressMessage(value);
+            }
+            if (valueChanged || rangeChanged) {
+                updateThumbPosFromCurrentProgress();
+            }
+            if (valueChanged) {
+                scheduleProgressSettled();
+            }
+            publishState();
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
     /**
      * Sets the current progress for this DiscreteSeekBar
      * The supplied argument will be capped to the current MIN-MAX range
@@ -395,23 +881,185 @@ public class DiscreteSeekBar extends View {
      * @see #setMin(int)
      */
     public void setProgress(int progress) {
+        invalidatePostedProgress();
+        mLastDragX = NO_DRAG_X;
         setProgress(progress, false);
     }
 
     private void setProgress(int value, boolean fromUser) {
-        value = Math.max(mMin, Math.min(mMax, value));
-        if (isAnimationRunning()) {
-            mPositionAnimator.cancel();
+        setProgress(value, fromUser, true);
+    }
+
+    /**
+     * @param updateThumb false if the caller is going to move the thumb itself
+     */
+    private void setProgress(int value, boolean fromUser, boolean updateThumb) {
+        TraceCompat.beginSection(TRACE_SET_PROGRESS);
+        try {
+            value = Math.max(mMin, Math.min(mMax, value));
+            if (isAnimationRunning()) {
+                mPositionAnimator.cancel();
+            }
+
+            if (mValue != value) {
+                mValue = value;
+                notifyProgress(value, fromUser);
+                updateProgressMessage(value);
+                if (updateThumb) {
+                    updateThumbPosFromCurrentProgress();
+                }
+                if (!fromUser) {
+                    scheduleProgressSettled();
+                }
+            }
+        } finally {
+            TraceCompat.endSection();
         }
+    }
 
-        if (mValue != value) {
-            mValue = value;
-            notifyProgress(value, fromUser);
-            updateProgressMessage(value);
-            updateThumbPosFromCurrentProgress();
+    /**
+     * Sets the progress from any thread.
+     * <p>
+     * The value is just stored and then applied on the UI thread, once per frame, with the same effect as
+     * {@link #setProgress(int)}. If this is called many times during the same frame only the last value is applied,
+     * the others are dropped. Use this to drive the DiscreteSeekBar from playback or sensor threads without
+     * posting every single update to the UI thread.
+     * </p>
+     * <p>
+     * A posted value is dropped if {@link #setProgress(int)} is called after this and before the value is applied,
+     * so it never overwrites a newer value. It's also dropped while the user is dragging the thumb.
+     * </p>
+     *
+     * @param progress the new progress. It will be capped to the MIN-MAX range when applied
+     */
+    public void postProgress(int progress) {
+        final long sequence = mPostedProgressSequence.incrementAndGet();
+        mPostedProgress.set((sequence << 32) | (progress & 0xffffffffL));
+        //The flag is only cleared before reading the value, so no value is lost
+        if (mPostedProgressScheduled.compareAndSet(false, true)) {
+            mPostedProgressRequest.request();
+        }
+    }
+
+    private final AnimationClock.FrameCallback mPostedProgressApplier = new AnimationClock.FrameCallback() {
+        @Override
+        public void onAnimationFrame(long frameTimeMillis) {
+            applyPostedProgress();
+        }
+    };
+
+    private final AnimationClock.FrameRequest mPostedProgressRequest =
+            AnimationClock.getInstance().createFrameRequest(mPostedProgressApplier);
+
+    private void applyPostedProgress() {
+        if (mPostedProgressScheduled.compareAndSet(true, false)) {
+            final long posted = mPostedProgress.get();
+            //Older than the last setProgress, or the user has the control now
+            if ((int) (posted >>> 32) - mPostedProgressInvalidated > 0 && !isDragging()) {
+                mLastDragX = NO_DRAG_X;
+                setProgress((int) posted, false);
+            }
         }
     }
 
+    /**
+     * Values posted until now won't be applied
+     */
+    private void invalidatePostedProgress() {
+        mPostedProgressInvalidated = mPostedProgressSequence.get();
+    }
+
+    /**
+     * Applies the posted progress now, if any, instead of waiting for the next frame
+     */
+    private void flushPostedProgress() {
+        mPostedProgressRequest.cancel();
+        applyPostedProgress();
+    }
+
+    private void publishState() {
+        mPublishedState.publish(mValue, mMin, mMax, mIsDragging);
+    }
+
+    /**
+     * Reads the current value, MIN, MAX and dragging state from any thread, without locks or allocations.
+     * <p>
+     * The snapshot is always consistent (all the fields come from the same moment) and it's updated on every change,
+     * before the {@link OnProgressChangeListener} is notified.
+     * </p>
+     *
+     * @param state the snapshot to fill, reuse it between reads
+     * @return the same snapshot
+     */
+    public ProgressState readProgressState(@NonNull ProgressState state) {
+        final PublishedState published = mPublishedState;
+        long sequence;
+        do {
+            sequence = published.beginRead();
+            state.mValue = published.getValue();
+            state.mMin = published.getMin();
+            state.mMax = published.getMax();
+            state.mDragging = published.isDragging();
+        } while (!published.endRead(sequence));
+        state.mSequence = sequence / 2;
+        return state;
+    }
+
+    /**
+     * If {@code capacity} is bigger than 0, every progress change is also recorded, with its time,
+     * in a buffer that can be drained from another thread with {@link #drainProgressChanges(long[], int[])}.
+     * <p>
+     * This is meant for a single real time consumer (like an audio thread) that needs every change,
+     * not only the latest value. Recording and draining don't use locks nor allocate anything.
+     * If the consumer doesn't keep up and the buffer gets full, new changes are dropped.
+     * Changes are recorded even if they're coalesced for the listener. By default it's disabled.
+     * </p>
+     *
+     * @param capacity the amount of changes the buffer can hold (rounded up to a power of 2, up to 2^30),
+     *                 or 0 to disable it
+     * @throws IllegalArgumentException if {@code capacity} is bigger than 2^30
+     * @see #getDroppedProgressChangeCount()
+     */
+    public void setProgressChangeBufferCapacity(int capacity) {
+        mProgressChangeBuffer = capacity > 0 ? new ProgressChangeBuffer(capacity) : null;
+    }
+
+    /**
+     * Moves the recorded progress changes, oldest first, to the arrays.
+     * Only one thread can drain the changes.
+     *
+     * @param timesNanos receives the time of each change, in the {@link System#nanoTime()} time base
+     * @param values     receives the value of each change
+     * @return the amount of changes copied, limited by the length of the arrays.
+     * 0 if there are no changes or the buffer is disabled
+     * @see #setProgressChangeBufferCapacity(int)
+     */
+    public int drainProgressChanges(@NonNull long[] timesNanos, @NonNull int[] values) {
+        final ProgressChangeBuffer buffer = mProgressChangeBuffer;
+        return buffer != null ? buffer.drain(timesNanos, values) : 0;
+    }
+
+    /**
+     * @return the amount of progress changes dropped because the buffer was full
+     * @see #setProgressChangeBufferCapacity(int)
+     */
+    public long getDroppedProgressChangeCount() {
+        final ProgressChangeBuffer buffer = mProgressChangeBuffer;
+        return buffer != null ? buffer.getDroppedCount() : 0;
+    }
+
+    /**
+     * Enables or disables (the default) the system trace sections of all the DiscreteSeekBars.
+     * <p>
+     * When enabled, the hot paths (drawing, touch handling, progress changes, indicator layout...)
+     * show up as named sections on systrace, and the drags and indicator animations as async sections.
+     * Only works on API&gt;=18.
+     * </p>
+     */
+    public static void setTracingEnabled(boolean enabled) {
+        TraceCompat.setEnabled(enabled);
+    }
+
     /**
      * Get the current progress
      *
@@ -432,6 +1080,58 @@ public class DiscreteSeekBar extends View {
         mPublicChangeListener = listener;
     }
 
+    /**
+     * Sets a listener to receive a notification when the progress stops changing
+     *
+     * @param listener The listener
+     * @see DiscreteSeekBar.OnProgressSettledListener
+     */
+    public void setOnProgressSettledListener(@Nullable OnProgressSettledListener listener) {
+        mSettledListener = listener;
+    }
+
+    /**
+     * If {@code coalesce} is true, progress changes will be notified at most once per frame,
+     * with only the last value, instead of once for every single value change.
+     * <p>
+     * On big ranges a fast drag or a progress animation may change the value many times per frame.
+     * Use this if the listener does heavy work on every change. By default it's disabled.
+     * </p>
+     * <p>
+     * This also applies to {@link #onValueChanged(int)}
+     * </p>
+     *
+     * @see #getProgressChangeCount()
+     * @see #getCoalescedProgressChangeCount()
+     */
+    public void setCoalesceProgressChanges(boolean coalesce) {
+        if (!coalesce) {
+            //Don't lose the pending change
+            dispatchPendingProgress();
+        }
+        mCoalesceProgressChanges = coalesce;
+    }
+
+    /**
+     * @return the amount of progress changes since the last {@link #resetProgressChangeCounters()}
+     */
+    public long getProgressChangeCount() {
+        return mProgressChangeCount;
+    }
+
+    /**
+     * @return the amount of progress changes that were not notified because a newer one
+     * replaced them on the same frame, since the last {@link #resetProgressChangeCounters()}
+     */
+    public long getCoalescedProgressChangeCount() {
+        return mCoalescedProgressChangeCount;
+    }
+
+    public void resetProgressChangeCounters() {
+        mProgressChangeCount = 0;
+        mCoalescedProgressChangeCount = 0;
+    }
+
     /**
      * Sets the color of the seek thumb, as well as the color of the popup indicator.
      *
@@ -442,7 +1142,7 @@ public class DiscreteSeekBar extends View {
      */
     public void setThumbColor(int thumbColor, int indicatorColor) {
         mThumb.setColorStateList(ColorStateList.valueOf(thumbColor));
-        mIndicator.setColors(indicatorColor, thumbColor);
+        setIndicatorColors(indicatorColor, thumbColor);
     }
 
     /**
@@ -457,7 +1157,15 @@ public class DiscreteSeekBar extends View {
         mThumb.setColorStateList(thumbColorStateList);
         //we use the "pressed" color to morph the indicator from it to its own color
         int thumbColor = thumbColorStateList.getColorForState(new int[]{PRESSED_STATE}, thumbColorStateList.getDefaultColor());
-        mIndicator.setColors(indicatorColor, thumbColor);
+        setIndicatorColors(indicatorColor, thumbColor);
+    }
+
+    private void setIndicatorColors(int startColor, int endColor) {
+        mIndicatorStartColor = startColor;
+        mIndicatorEndColor = endColor;
+        if (mIndicator != null) {
+            mIndicator.setColors(startColor, endColor);
+        }
     }
 
     /**
@@ -522,24 +1230,363 @@ public class DiscreteSeekBar extends View {
         this.mIndicatorPopupEnabled = enabled;
     }
 
-    private void updateIndicatorSizes() {
-        if (!isInEditMode()) {
-            if (mNumericTransformer.useStringTransform()) {
-                mIndicator.updateSizes(mNumericTransformer.transformToString(mMax));
-            } else {
-                mIndicator.updateSizes(convertValueToMessage(mNumericTransformer.transform(mMax)));
-            }
-        }
-
+    /**
+     * @return true if the indicator is currently showing
+     */
+    public boolean isIndicatorShowing() {
+        return mIndicator != null && mIndicator.isShowing();
     }
 
-    private void notifyProgress(int value, boolean fromUser) {
-        if (mPublicChangeListener != null) {
-            mPublicChangeListener.onProgressChanged(DiscreteSeekBar.this, value, fromUser);
+    /**
+     * If {@code enabled} is true the labels shown on the indicator will be cached after being formatted
+     * so dragging over the same values again doesn't need to format them again.
+     * <p>
+     * The cache is dropped when the formatter, the {@link DiscreteSeekBar.NumericTransformer},
+     * the MIN/MAX range or the default Locale change. By default it's disabled.
+     * </p>
+     * <p>
+     * Don't enable this if your {@link DiscreteSeekBar.NumericTransformer} can return different values
+     * for the same input over time.
+     * </p>
+     */
+    public void setIndicatorLabelCacheEnabled(boolean enabled) {
+        if (!enabled) {
+            mLabelCache = null;
+        } else if (mLabelCache == null) {
+            mLabelCache = new LabelCache(mMin, mMax);
+        }
+    }
+
+    /**
+     * If {@code enabled} is true the track and the dots are recorded once and reused on every frame,
+     * instead of being drawn from scratch every time the thumb moves.
+     * <p>
+     * This is useful on screens with a lot of DiscreteSeekBars or with dots enabled on big ranges.
+     * On API levels lower than 23 the layers are kept in Bitmaps, so it uses some extra memory.
+     * By default it's disabled.
+     * </p>
+     */
+    public void setStaticLayerCacheEnabled(boolean enabled) {
+        if (!enabled) {
+            if (mStaticLayerCache != null) {
+                mStaticLayerCache.release();
+                mStaticLayerCache = null;
+            }
+        } else if (mStaticLayerCache == null) {
+            mStaticLayerCache = new StaticLayerCache();
+        }
+        invalidate();
+    }
+
+    /**
+     * If {@code enabled} is true the indicator will be drawn in the overlay of the root View
+     * instead of being added as a new Window every time it's shown.
+     * <p>
+     * This avoids the cost of adding/removing a Window on every touch, but the indicator
+     * can't be drawn outside the root View bounds. It only works on API 18+,
+     * older versions will keep using a Window. By default it's disabled.
+     * </p>
+     */
+    public void setIndicatorOverlayEnabled(boolean enabled) {
+        mIndicatorOverlayEnabled = enabled;
+        if (mIndicator != null) {
+            mIndicator.setOverlayEnabled(enabled);
+        }
+    }
+
+    /**
+     * If {@code enabled} is true the Window used for the indicator will be as big as the indicator itself,
+     * and it will be moved following the thumb (and this View, if it gets scrolled) at most once per frame.
+     * <p>
+     * By default the Window is as wide as the screen and the indicator is moved inside it.
+     * This has no effect if the indicator is being drawn in the overlay.
+     * </p>
+     *
+     * @see #setIndicatorOverlayEnabled(boolean)
+     */
+    public void setIndicatorCompactWindowEnabled(boolean enabled) {
+        mIndicatorCompactWindowEnabled = enabled;
+        if (mIndicator != null) {
+            mIndicator.setCompactWindowEnabled(enabled);
+        }
+    }
+
+    /**
+     * If {@code enabled} is true this DiscreteSeekBar will use an indicator shared
+     * with the rest of the DiscreteSeekBars on the same Window that enable this too,
+     * instead of keeping its own indicator.
+     * <p>
+     * As only one of them can be dragged at a time this saves a lot of Views on screens
+     * with many DiscreteSeekBars, like long lists. By default it's disabled.
+     * </p>
+     */
+    public void setSharedIndicatorEnabled(boolean enabled) {
+        if (enabled == mSharedIndicatorEnabled) {
+            return;
+        }
+        releaseIndicator();
+        mIndicator = null;
+        unregisterFromIndicatorPool();
+        mSharedIndicatorEnabled = enabled;
+        registerInIndicatorPool();
+    }
+
+    private void registerInIndicatorPool() {
+        IBinder token = getWindowToken();
+        if (mSharedIndicatorEnabled && token != null && !isInEditMode()) {
+            IndicatorPool.register(token);
+            mIndicatorPoolToken = token;
+        }
+    }
+
+    private void unregisterFromIndicatorPool() {
+        if (mIndicatorPoolToken != null) {
+            IndicatorPool.unregister(mIndicatorPoolToken);
+            mIndicatorPoolToken = null;
+        }
+    }
+
+    private void returnSharedIndicator() {
+        if (mSharedIndicatorEnabled && mIndicator != null) {
+            IndicatorPool.release(mIndicatorPoolToken, mFloaterListener);
+            mIndicator = null;
+        }
+    }
+
+    /**
+     * Forces the indicator to disappear. The shared indicator is also returned to the pool
+     */
+    private void dismissIndicatorComplete() {
+        if (mIndicator != null) {
+            mIndicator.dismissComplete();
+            returnSharedIndicator();
+        }
+    }
+
+    /**
+     * Releases the indicator, as we're not attached anymore
+     */
+    private void releaseIndicator() {
+        if (mIndicator != null) {
+            if (mSharedIndicatorEnabled) {
+                dismissIndicatorComplete();
+            } else {
+                mIndicator.release();
+            }
+        }
+    }
+
+    private void updateDotsSteps() {
+        if (mDotsEnabled) {
+            mDots.setSteps(mMax - mMin);
+            updateDotsScale();
+        }
+    }
+
+    private void updateDotsScale() {
+        if (mDotsEnabled) {
+            mDots.setScaleLookup(getScaleLookup(mTrack.getBounds().width()), isRtl());
+        }
+    }
+
+    /**
+     * Sets the mapping between values and positions along the track.
+     * <p>
+     * By default values are spread linearly. Use this for logarithmic, power or piecewise scales
+     * instead of faking them with a {@link NumericTransformer}.
+     * </p>
+     *
+     * @param scale the scale, or null to go back to the default linear one
+     * @see ValueScale
+     */
+    public void setValueScale(@Nullable ValueScale scale) {
+        mScaleLookup = scale == null ? null : new ScaleLookup(scale);
+        updateDotsScale();
+        updateThumbPosFromCurrentProgress();
+    }
+
+    @Nullable
+    public ValueScale getValueScale() {
+        return mScaleLookup == null ? null : mScaleLookup.getScale();
+    }
+
+    /**
+     * @return the lookup tables updated for the current range and available pixels or null for linear scales
+     */
+    private ScaleLookup getScaleLookup(int available) {
+        final ScaleLookup lookup = mScaleLookup;
+        if (lookup != null) {
+            lookup.update(mMin, mMax, available);
+        }
+        return lookup;
+    }
+
+    private void resetLabelCache() {
+        if (mLabelCache != null) {
+            mLabelCache.reset(mMin, mMax);
+        }
+    }
+
+    private void updateIndicatorSizes() {
+        mIndicatorSizesPending = false;
+        if (mGrowingRangeEnabled) {
+            mLabelWidthBucket = getLabelWidthBucket();
+        }
+        if (mIndicator != null) {
+            TraceCompat.beginSection(TRACE_INDICATOR_SIZES);
+            try {
+                mIndicator.updateSizes(mLabelSource);
+            } finally {
+                TraceCompat.endSection();
+            }
+        }
+
+    }
+
+    private void notifyProgress(int value, boolean fromUser) {
+        mProgressChangeCount++;
+        publishState();
+        final ProgressChangeBuffer buffer = mProgressChangeBuffer;
+        if (buffer != null) {
+            buffer.offer(System.nanoTime(), value);
+        }
+        mLastChangeFromUser = fromUser;
+        if (mCoalesceProgressChanges) {
+            if (mProgressChangePending) {
+                mCoalescedProgressChangeCount++;
+            }
+            mProgressChangePending = true;
+            mPendingProgress = value;
+            scheduleProgressDispatcher();
+        } else {
+            dispatchProgress(value, fromUser);
+        }
+    }
+
+    private void dispatchProgress(int value, boolean fromUser) {
+        final MetricsSink sink = mMetricsSink;
+        final long start = sink != null ? System.nanoTime() : 0;
+        if (mPublicChangeListener != null) {
+            mPublicChangeListener.onProgressChanged(DiscreteSeekBar.this, value, fromUser);
         }
         onValueChanged(value);
+        if (sink != null) {
+            sink.onListenerDispatch(this, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Installs a sink to receive performance measurements of this DiscreteSeekBar
+     * (draw time, invalidated area, label formatting, indicator add/remove,
+     * animation frames and listener dispatch).
+     * <p>
+     * When there's no sink (the default) nothing is measured at all.
+     * </p>
+     *
+     * @param sink the sink or null to stop measuring
+     */
+    public void setMetricsSink(@Nullable MetricsSink sink) {
+        mMetricsSink = sink;
+        mLastAnimationFrameNanos = 0;
+        if (mIndicator != null) {
+            mIndicator.setMetricsListener(sink != null ? mIndicatorMetrics : null);
+        }
+    }
+
+    /**
+     * @return the display frame interval, from its refresh rate
+     */
+    private long getFrameIntervalNanos() {
+        if (mFrameIntervalNanos == 0) {
+            WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = wm != null ? wm.getDefaultDisplay().getRefreshRate() : 0;
+            mFrameIntervalNanos = (long) (1000000000L / (refreshRate >= 1 ? refreshRate : DEFAULT_REFRESH_RATE));
+        }
+        return mFrameIntervalNanos;
+    }
+
+    private final PopupIndicator.MetricsListener mIndicatorMetrics = new PopupIndicator.MetricsListener() {
+        @Override
+        public void onIndicatorAdded(long durationNanos) {
+            if (mMetricsSink != null) {
+                mMetricsSink.onIndicatorAdded(DiscreteSeekBar.this, durationNanos);
+            }
+        }
+
+        @Override
+        public void onIndicatorRemoved(long durationNanos) {
+            if (mMetricsSink != null) {
+                mMetricsSink.onIndicatorRemoved(DiscreteSeekBar.this, durationNanos);
+            }
+        }
+    };
+
+    private void dispatchPendingProgress() {
+        if (mProgressChangePending) {
+            mProgressChangePending = false;
+            dispatchProgress(mPendingProgress, mLastChangeFromUser);
+        }
+    }
+
+    /**
+     * The progress will be settled once there's no drag or animation going on.
+     * Nothing is scheduled unless somebody is interested in it
+     */
+    private void scheduleProgressSettled() {
+        if (mSettledListener == null && !mCoalesceProgressChanges) {
+            return;
+        }
+        mSettlePending = true;
+        scheduleProgressDispatcher();
+    }
+
+    private void scheduleProgressDispatcher() {
+        if (!mProgressDispatcherScheduled) {
+            mProgressDispatcherScheduled = true;
+            AnimationClock.getInstance().addFrameCallback(mProgressDispatcher);
+        }
+    }
+
+    private void cancelProgressDispatcher() {
+        if (mProgressDispatcherScheduled) {
+            mProgressDispatcherScheduled = false;
+            AnimationClock.getInstance().removeFrameCallback(mProgressDispatcher);
+        }
+    }
+
+    /**
+     * Dispatches everything still pending right away
+     */
+    private void flushProgressDispatcher() {
+        cancelProgressDispatcher();
+        dispatchPendingProgress();
+        if (mSettlePending) {
+            mSettlePending = false;
+            notifyProgressSettled();
+        }
     }
 
+    private void notifyProgressSettled() {
+        if (mSettledListener != null) {
+            mSettledListener.onProgressSettled(this, mValue, mLastChangeFromUser);
+        }
+    }
+
+    private final AnimationClock.FrameCallback mProgressDispatcher = new AnimationClock.FrameCallback() {
+        @Override
+        public void onAnimationFrame(long frameTimeMillis) {
+            dispatchPendingProgress();
+            if (mSettlePending && !isDragging() && !isAnimationRunning()) {
+                mSettlePending = false;
+                notifyProgressSettled();
+            }
+            //While dragging or animating we'll receive new changes (and the settle) soon
+            if (!mProgressChangePending && (!mSettlePending || isDragging())) {
+                cancelProgressDispatcher();
+            }
+        }
+    };
+
     private void notifyBubble(boolean open) {
         if (open) {
             onShowBubble();
@@ -579,12 +1626,7 @@ public class DiscreteSeekBar extends View {
     }
 
     private void updateKeyboardRange() {
-        int range = mMax - mMin;
-        if ((mKeyProgressIncrement == 0) || (range / mKeyProgressIncrement > 20)) {
-            // It will take the user too long to change this via keys, change it
-            // to something more reasonable
-            mKeyProgressIncrement = Math.max(1, Math.round((float) range / 20));
-        }
+        mKeyProgressIncrement = SeekBarMath.keyProgressIncrement(mKeyProgressIncrement, mMax - mMin);
     }
 
 
@@ -601,9 +1643,7 @@ public class DiscreteSeekBar extends View {
         super.onLayout(changed, left, top, right, bottom);
         if (changed) {
             removeCallbacks(mShowIndicatorRunnable);
-            if (!isInEditMode()) {
-                mIndicator.dismissComplete();
-            }
+            dismissIndicatorComplete();
             updateFromDrawableState();
         }
     }
@@ -627,33 +1667,65 @@ public class DiscreteSeekBar extends View {
         int trackHeight = Math.max(mTrackHeight / 2, 1);
         mTrack.setBounds(paddingLeft + halfThumb, bottom - halfThumb - trackHeight,
                 getWidth() - halfThumb - paddingRight - addedThumb, bottom - halfThumb + trackHeight);
+        if (mDotsEnabled) {
+            mDots.setBounds(mTrack.getBounds());
+            updateDotsScale();
+        }
         int scrubberHeight = Math.max(mScrubberHeight / 2, 2);
         mScrubber.setBounds(paddingLeft + halfThumb, bottom - halfThumb - scrubberHeight,
                 paddingLeft + halfThumb, bottom - halfThumb + scrubberHeight);
 
         //Update the thumb position after size changed
+        mLastDragX = NO_DRAG_X;
         updateThumbPosFromCurrentProgress();
     }
 
     @Override
-    protected synchronized void onDraw(Canvas canvas) {
-        if (!isLollipopOrGreater) {
-            mRipple.draw(canvas);
-        }
+    protected void onDraw(Canvas canvas) {
+        TraceCompat.beginSection(TRACE_DRAW);
+        try {
+            final MetricsSink sink = mMetricsSink;
+            final long start = sink != null ? System.nanoTime() : 0;
+            if (!isLollipopOrGreater) {
+                mRipple.draw(canvas);
+            }
+
+            final StaticLayerCache layerCache = mStaticLayerCache;
+            //Don't draw the track below the scrubber, it would be drawn twice
+            final Rect trackClip = mTrackClipRect;
+            boolean clipTrack = getUncoveredTrack(trackClip);
+            if (!clipTrack || !trackClip.isEmpty()) {
+                int count = 0;
+                if (clipTrack) {
+                    count = canvas.save();
+                    canvas.clipRect(trackClip);
+                }
+                if (layerCache != null) {
+                    layerCache.drawTrack(canvas, mTrack);
+                } else {
+                    mTrack.draw(canvas);
+                }
+                if (clipTrack) {
+                    canvas.restoreToCount(count);
+                }
+            }
+            mScrubber.draw(canvas);
 
-        mTrack.draw(canvas);
-        mScrubber.draw(canvas);
+            if (mDotsEnabled) {
+                if (layerCache != null) {
+                    layerCache.drawDots(canvas, mDots);
+                } else {
+                    mDots.draw(canvas);
+                }
+            }
 
-        if (mDotsEnabled) {
-            mDotsPaint.setColor(mDotColor);
-            Rect bounds = mTrack.getBounds();
-            float spacing = ((float) bounds.width()) / (getMax() - getMin());
-            for (float x = bounds.left; x < bounds.right; x += spacing) {
-                canvas.drawCircle(x, getHeight() / 2f, mDotSize, mDotsPaint);
+            mThumb.draw(canvas);
+            if (sink != null) {
+                sink.onDraw(this, System.nanoTime() - start);
             }
+        } finally {
+            TraceCompat.endSection();
         }
-
-        mThumb.draw(canvas);
     }
 
     @Override
@@ -662,6 +1734,31 @@ public class DiscreteSeekBar extends View {
         updateFromDrawableState();
     }
 
+    /**
+     * Computes the part of the track not covered by the scrubber
+     *
+     * @param outRect receives the uncovered part, it may be empty
+     * @return false if the scrubber doesn't completely cover the track (it's translucent or thinner)
+     */
+    private boolean getUncoveredTrack(Rect outRect) {
+        final Rect track = mTrack.getBounds();
+        final Rect scrubber = mScrubber.getBounds();
+        if (scrubber.isEmpty() || scrubber.top > track.top || scrubber.bottom < track.bottom || !mScrubber.isOpaque()) {
+            return false;
+        }
+        outRect.set(track);
+        //The scrubber always grows from one of the ends of the track
+        if (isRtl()) {
+            outRect.right = Math.min(track.right, scrubber.left);
+        } else {
+            outRect.left = Math.max(track.left, scrubber.right);
+        }
+        if (outRect.left > outRect.right) {
+            outRect.setEmpty();
+        }
+        return true;
+    }
+
     private void updateFromDrawableState() {
         int[] state = getDrawableState();
         boolean focused = false;
@@ -678,6 +1775,8 @@ public class DiscreteSeekBar extends View {
             //poping in/out on simple taps
             removeCallbacks(mShowIndicatorRunnable);
             postDelayed(mShowIndicatorRunnable, INDICATOR_DELAY_FOR_TAPS);
+            //Use the idle time before showing it to create the indicator, if needed
+            scheduleIndicatorCreation();
         } else {
             hideFloater();
         }
@@ -688,16 +1787,110 @@ public class DiscreteSeekBar extends View {
     }
 
     private void updateProgressMessage(int value) {
-        if (!isInEditMode()) {
+        //The indicator will get the current value when created
+        if (mIndicator != null) {
+            final MetricsSink sink = mMetricsSink;
+            if (sink != null) {
+                long start = System.nanoTime();
+                setIndicatorValue(value);
+                sink.onLabelFormatted(this, System.nanoTime() - start);
+            } else {
+                setIndicatorValue(value);
+            }
+        }
+    }
+
+    private void setIndicatorValue(int value) {
+        IntegerLabelFormatter formatter;
+        if (mLabelCache == null && !mNumericTransformer.useStringTransform()
+                && (formatter = getIntegerFormatter()) != null) {
+            //Write the digits directly into the TextView without creating Strings
+            formatter.format(mNumericTransformer.transform(value));
+            mIndicator.setValue(formatter.getBuffer(), 0, formatter.length());
+        } else {
+            mIndicator.setValue(getIndicatorLabel(value));
+        }
+    }
+
+    //How the labels are built, used by the indicator to find the widest one
+    private final WidestLabel.Source mLabelSource = new WidestLabel.Source() {
+        @Override
+        public int getMin() {
+            return mMin;
+        }
+
+        @Override
+        public int getMax() {
+            return mMax;
+        }
+
+        @Override
+        public Object getTransformer() {
+            return mNumericTransformer;
+        }
+
+        @Override
+        public String getFormatter() {
+            return mIndicatorFormatter != null ? mIndicatorFormatter : DEFAULT_FORMATTER;
+        }
+
+        @Override
+        public boolean useStringTransform() {
+            return mNumericTransformer.useStringTransform();
+        }
+
+        @Override
+        public int transform(int value) {
+            return mNumericTransformer.transform(value);
+        }
+
+        @Override
+        public String transformToString(int value) {
+            return mNumericTransformer.transformToString(value);
+        }
+
+        @Override
+        public String format(int transformedValue) {
+            return convertValueToMessage(transformedValue);
+        }
+    };
+
+    private String getIndicatorLabel(int value) {
+        String label = mLabelCache != null ? mLabelCache.get(value) : null;
+        if (label == null) {
             if (mNumericTransformer.useStringTransform()) {
-                mIndicator.setValue(mNumericTransformer.transformToString(value));
+                label = mNumericTransformer.transformToString(value);
             } else {
-                mIndicator.setValue(convertValueToMessage(mNumericTransformer.transform(value)));
+                label = convertValueToMessage(mNumericTransformer.transform(value));
+            }
+            if (mLabelCache != null) {
+                mLabelCache.put(value, label);
             }
         }
+        return label;
+    }
+
+    /**
+     * Returns the compiled version of the current format, compiling it if needed
+     *
+     * @return the compiled format or null if the format is too complex and we need to use the Formatter
+     */
+    private IntegerLabelFormatter getIntegerFormatter() {
+        Locale locale = Locale.getDefault();
+        if (!mIntegerFormatterCompiled
+                || (mIntegerFormatter != null && !mIntegerFormatter.getLocale().equals(locale))) {
+            String format = mIndicatorFormatter != null ? mIndicatorFormatter : DEFAULT_FORMATTER;
+            mIntegerFormatter = IntegerLabelFormatter.compile(format, locale);
+            mIntegerFormatterCompiled = true;
+        }
+        return mIntegerFormatter;
     }
 
     private String convertValueToMessage(int value) {
+        IntegerLabelFormatter integerFormatter = getIntegerFormatter();
+        if (integerFormatter != null) {
+            return integerFormatter.formatToString(value);
+        }
         String format = mIndicatorFormatter != null ? mIndicatorFormatter : DEFAULT_FORMATTER;
         //We're trying to re-use the Formatter here to avoid too much memory allocations
         //But I'm not completely sure if it's doing anything good... :(
@@ -726,42 +1919,150 @@ public class DiscreteSeekBar extends View {
         if (!isEnabled()) {
             return false;
         }
-        int actionMasked = MotionEventCompat.getActionMasked(event);
-        switch (actionMasked) {
-            case MotionEvent.ACTION_DOWN:
-                mDownX = event.getX();
-                startDragging(event, isInScrollingContainer());
-                updateDragging(event);
-                break;
-            case MotionEvent.ACTION_MOVE:
-                if (isDragging()) {
+        TraceCompat.beginSection(TRACE_TOUCH);
+        try {
+            int actionMasked = MotionEventCompat.getActionMasked(event);
+            switch (actionMasked) {
+                case MotionEvent.ACTION_DOWN:
+                    mDownX = event.getX();
+                    mDragTracker.clear();
+                    mDragTracker.addSample(event.getEventTime(), mDownX);
+                    if (mThumbPredictor != null) {
+                        mThumbPredictor.reset();
+                        mThumbPredictor.addSample(event.getEventTime(), mDownX);
+                    }
+                    startDragging(event, isInScrollingContainer());
                     updateDragging(event);
-                } else {
-                    final float x = event.getX();
-                    if (Math.abs(x - mDownX) > mTouchSlop) {
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    //Moves come batched once per frame, the historical samples are only used for the velocity
+                    //and the touch slop, the progress is updated just once with the latest one
+                    addHistoricalSamples(event);
+                    if (isDragging()) {
+                        updateDragging(event);
+                    } else if (exceedsTouchSlop(event)) {
                         startDragging(event, false);
                     }
-                }
-                break;
-            case MotionEvent.ACTION_UP:
-                if (!isDragging() && mAllowTrackClick) {
-                    startDragging(event, false);
-                    updateDragging(event);
-                }
-                stopDragging();
-                break;
-            case MotionEvent.ACTION_CANCEL:
-                stopDragging();
-                break;
+                    break;
+                case MotionEvent.ACTION_UP:
+                    if (!isDragging() && mAllowTrackClick) {
+                        startDragging(event, false);
+                        updateDragging(event);
+                    }
+                    stopDragging();
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    stopDragging();
+                    break;
+            }
+        } finally {
+            TraceCompat.endSection();
         }
         return true;
     }
 
+    private void addHistoricalSamples(MotionEvent event) {
+        final DragTracker tracker = mDragTracker;
+        final ThumbPredictor predictor = mThumbPredictor;
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            tracker.addSample(event.getHistoricalEventTime(i), event.getHistoricalX(i));
+            if (predictor != null) {
+                predictor.addSample(event.getHistoricalEventTime(i), event.getHistoricalX(i));
+            }
+        }
+        tracker.addSample(event.getEventTime(), event.getX());
+        if (predictor != null) {
+            predictor.addSample(event.getEventTime(), event.getX());
+        }
+    }
+
+    /**
+     * If {@code enabled} is true, while dragging the thumb and scrubber will be drawn where the finger
+     * is expected to be when the frame is shown, extrapolated from the drag velocity,
+     * to hide the touch latency. By default it's disabled.
+     * <p>
+     * The progress value (and its notifications) still only follows the real touch samples,
+     * and the thumb goes back to the real position when the drag ends.
+     * </p>
+     *
+     * @see #getPredictionCount()
+     * @see #getMeanPredictionError()
+     * @see #getMaxPredictionError()
+     */
+    public void setThumbPredictionEnabled(boolean enabled) {
+        if (enabled == (mThumbPredictor != null)) {
+            return;
+        }
+        mThumbPredictor = enabled ? new ThumbPredictor() : null;
+        if (!enabled) {
+            updateThumbPosFromCurrentProgress();
+        }
+    }
+
+    /**
+     * @return the amount of thumb predictions checked against the real touch samples
+     */
+    public int getPredictionCount() {
+        return mThumbPredictor == null ? 0 : mThumbPredictor.getPredictionCount();
+    }
+
+    /**
+     * @return the mean distance, in pixels, from the predicted touch positions to the real ones
+     */
+    public float getMeanPredictionError() {
+        return mThumbPredictor == null ? 0 : mThumbPredictor.getMeanError();
+    }
+
+    /**
+     * @return the max distance, in pixels, from a predicted touch position to the real one
+     */
+    public float getMaxPredictionError() {
+        return mThumbPredictor == null ? 0 : mThumbPredictor.getMaxError();
+    }
+
+    public void resetPredictionMetrics() {
+        if (mThumbPredictor != null) {
+            mThumbPredictor.resetMetrics();
+        }
+    }
+
+    private boolean exceedsTouchSlop(MotionEvent event) {
+        final float downX = mDownX;
+        final float slop = mTouchSlop;
+        if (Math.abs(event.getX() - downX) > slop) {
+            return true;
+        }
+        //A fast move may go past the slop and come back within the same batch
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            if (Math.abs(event.getHistoricalX(i) - downX) > slop) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimated velocity of the current (or the last) drag, from the latest touch samples
+     *
+     * @return the velocity in pixels per second. Positive values move towards MAX
+     */
+    public float getDragVelocity() {
+        float velocity = mDragTracker.getVelocity();
+        return isRtl() ? -velocity : velocity;
+    }
+
     private boolean isInScrollingContainer() {
-        return SeekBarCompat.isInScrollingContainer(getParent());
+        if (mScrollingContainerState == SCROLLING_CONTAINER_UNKNOWN) {
+            mScrollingContainerState = SeekBarCompat.isInScrollingContainer(getParent())
+                    ? SCROLLING_CONTAINER_YES : SCROLLING_CONTAINER_NO;
+        }
+        return mScrollingContainerState == SCROLLING_CONTAINER_YES;
     }
 
     private boolean startDragging(MotionEvent ev, boolean ignoreTrackIfInScrollContainer) {
+        mLastDragX = NO_DRAG_X;
         final Rect bounds = mTempRect;
         mThumb.copyBounds(bounds);
         //Grow the current thumb rect for a bigger touch area
@@ -782,10 +2083,15 @@ public class DiscreteSeekBar extends View {
             attemptClaimDrag();
             setHotspot(ev.getX(), ev.getY());
             mDragOffset = (int) (ev.getX() - bounds.left - mAddedTouchBounds);
+            mLastDragX = NO_DRAG_X;
+            if (!mDragTraced) {
+                mDragTraced = TraceCompat.beginAsyncSection(TRACE_DRAG_SESSION, System.identityHashCode(this));
+            }
             if (mPublicChangeListener != null) {
                 mPublicChangeListener.onStartTrackingTouch(this);
             }
         }
+        publishState();
         return mIsDragging;
     }
 
@@ -797,8 +2103,21 @@ public class DiscreteSeekBar extends View {
         if (mPublicChangeListener != null) {
             mPublicChangeListener.onStopTrackingTouch(this);
         }
+        boolean wasDragging = mIsDragging;
         mIsDragging = false;
+        publishState();
+        if (mDragTraced) {
+            mDragTraced = false;
+            TraceCompat.endAsyncSection(TRACE_DRAG_SESSION, System.identityHashCode(this));
+        }
         setPressed(false);
+        if (wasDragging) {
+            if (mThumbPredictor != null) {
+                //Back to the real position
+                updateThumbPosFromCurrentProgress();
+            }
+            scheduleProgressSettled();
+        }
     }
 
     @Override
@@ -847,6 +2166,7 @@ public class DiscreteSeekBar extends View {
         }
 
         mAnimationTarget = progress;
+        mLastAnimationFrameNanos = 0;
         mPositionAnimator = AnimatorCompat.create(curProgress,
                 progress, new AnimatorCompat.AnimationFrameUpdateListener() {
                     @Override
@@ -856,6 +2176,7 @@ public class DiscreteSeekBar extends View {
                 });
         mPositionAnimator.setDuration(PROGRESS_ANIMATION_DURATION);
         mPositionAnimator.start();
+        scheduleProgressSettled();
     }
 
     private int getAnimationTarget() {
@@ -864,18 +2185,64 @@ public class DiscreteSeekBar extends View {
 
     void setAnimationPosition(float position) {
         mAnimationPosition = position;
+        if (mMetricsSink != null) {
+            reportAnimationFrame(mMetricsSink);
+        }
+        if (mScaleLookup != null) {
+            updateProgressFromScaledAnimation(position);
+            return;
+        }
         float currentScale = (position - mMin) / (float) (mMax - mMin);
         updateProgressFromAnimation(currentScale);
     }
 
+    private void reportAnimationFrame(MetricsSink sink) {
+        long now = System.nanoTime();
+        int dropped = 0;
+        final long frameInterval = getFrameIntervalNanos();
+        if (mLastAnimationFrameNanos != 0) {
+            //Frames that should have been there between this one and the previous one
+            dropped = (int) Math.max(0, Math.round((double) (now - mLastAnimationFrameNanos) / frameInterval) - 1);
+        }
+        mLastAnimationFrameNanos = now;
+        sink.onAnimationFrame(this, dropped);
+    }
+
     float getAnimationPosition() {
         return mAnimationPosition;
     }
 
 
     private void updateDragging(MotionEvent ev) {
-        setHotspot(ev.getX(), ev.getY());
-        int x = (int) ev.getX();
+        TraceCompat.beginSection(TRACE_DRAGGING);
+        try {
+            setHotspot(ev.getX(), ev.getY());
+            int x = (int) ev.getX();
+            final boolean predict = mThumbPredictor != null && isDragging();
+            if (x != mLastDragX) {
+                mLastDragX = x;
+                //When predicting, the thumb is only moved once, to the predicted position
+                setProgress(getProgressAtDragX(x), true, !predict);
+            }
+            //Same pixel means same progress, but the prediction may still change
+            if (predict) {
+                //Predict where the finger will be when the next frame is shown
+                long frameTime = AnimationClock.getInstance().now() + getFrameIntervalNanos() / 1000000;
+                float predictedX = mThumbPredictor.predict(ev.getX(), ev.getEventTime(),
+                        mDragTracker.getVelocity(), frameTime);
+                //Only the thumb goes there, the progress stays at the real one
+                updateThumbPosForValue(getProgressAtDragX((int) predictedX));
+            }
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * Maps a touch x coordinate to the progress while dragging.
+     * Positions out of the track are clamped to MIN/MAX
+     */
+    private int getProgressAtDragX(int x) {
         Rect oldBounds = mThumb.getBounds();
         int halfThumb = oldBounds.width() / 2;
         int addedThumb = mAddedTouchBounds;
@@ -889,12 +2256,15 @@ public class DiscreteSeekBar extends View {
         }
 
         int available = right - left;
-        float scale = (float) (newX - left) / (float) available;
-        if (isRtl()) {
-            scale = 1f - scale;
+        final ScaleLookup lookup = getScaleLookup(available);
+        if (lookup != null) {
+            int pixel = newX - left;
+            if (isRtl()) {
+                pixel = available - pixel;
+            }
+            return lookup.valueAt(pixel);
         }
-        int progress = Math.round((scale * (mMax - mMin)) + mMin);
-        setProgress(progress, true);
+        return SeekBarMath.progressAtPosition(newX - left, available, mMin, mMax, isRtl());
     }
 
     private void updateProgressFromAnimation(float scale) {
@@ -916,18 +2286,45 @@ public class DiscreteSeekBar extends View {
         updateThumbPos(thumbPos);
     }
 
+    private void updateProgressFromScaledAnimation(float position) {
+        Rect bounds = mThumb.getBounds();
+        int halfThumb = bounds.width() / 2;
+        int addedThumb = mAddedTouchBounds;
+        int left = getPaddingLeft() + halfThumb + addedThumb;
+        int right = getWidth() - (getPaddingRight() + halfThumb + addedThumb);
+        int available = right - left;
+        int progress = Math.round(position);
+        //Same as updateProgressFromAnimation
+        if (progress != getProgress()) {
+            mValue = progress;
+            notifyProgress(mValue, true);
+            updateProgressMessage(progress);
+        }
+        final int thumbPos = (int) (getScaleLookup(available).pixelOf(position) + 0.5f);
+        updateThumbPos(thumbPos);
+    }
+
     private void updateThumbPosFromCurrentProgress() {
+        updateThumbPosForValue(mValue);
+    }
+
+    private void updateThumbPosForValue(int value) {
         int thumbWidth = mThumb.getIntrinsicWidth();
         int addedThumb = mAddedTouchBounds;
         int halfThumb = thumbWidth / 2;
-        float scaleDraw = (mValue - mMin) / (float) (mMax - mMin);
 
         //This doesn't matter if RTL, as we just need the "avaiable" area
         int left = getPaddingLeft() + halfThumb + addedThumb;
         int right = getWidth() - (getPaddingRight() + halfThumb + addedThumb);
         int available = right - left;
 
-        final int thumbPos = (int) (scaleDraw * available + 0.5f);
+        final ScaleLookup lookup = getScaleLookup(available);
+        final int thumbPos;
+        if (lookup != null) {
+            thumbPos = (int) (lookup.pixelOf(value) + 0.5f);
+        } else {
+            thumbPos = SeekBarMath.positionOfProgress(value, mMin, mMax, available);
+        }
         updateThumbPos(thumbPos);
     }
 
@@ -942,26 +2339,48 @@ public class DiscreteSeekBar extends View {
             start = getPaddingLeft() + mAddedTouchBounds;
             posX = start + posX;
         }
-        mThumb.copyBounds(mInvalidateRect);
-        mThumb.setBounds(posX, mInvalidateRect.top, posX + thumbWidth, mInvalidateRect.bottom);
+        final Rect dirty = mInvalidateRect;
+        final Rect scrubber = mScrubber.getBounds();
+        final int oldScrubberLeft = scrubber.left;
+        final int oldScrubberRight = scrubber.right;
+        mThumb.copyBounds(dirty);
+        final boolean thumbMoved = dirty.left != posX;
+        mThumb.setBounds(posX, dirty.top, posX + thumbWidth, dirty.bottom);
         if (isRtl()) {
-            mScrubber.getBounds().right = start - halfThumb;
-            mScrubber.getBounds().left = posX + halfThumb;
+            scrubber.right = start - halfThumb;
+            scrubber.left = posX + halfThumb;
         } else {
-            mScrubber.getBounds().left = start + halfThumb;
-            mScrubber.getBounds().right = posX + halfThumb;
+            scrubber.left = start + halfThumb;
+            scrubber.right = posX + halfThumb;
         }
         final Rect finalBounds = mTempRect;
         mThumb.copyBounds(finalBounds);
-        if (!isInEditMode()) {
+        if (mIndicator != null) {
             mIndicator.move(finalBounds.centerX());
         }
 
-        mInvalidateRect.inset(-mAddedTouchBounds, -mAddedTouchBounds);
         finalBounds.inset(-mAddedTouchBounds, -mAddedTouchBounds);
-        mInvalidateRect.union(finalBounds);
         SeekBarCompat.setHotspotBounds(mRipple, finalBounds.left, finalBounds.top, finalBounds.right, finalBounds.bottom);
-        invalidate(mInvalidateRect);
+        if (!thumbMoved && scrubber.left == oldScrubberLeft && scrubber.right == oldScrubberRight) {
+            //Nothing to redraw
+            return;
+        }
+        //Old and new thumb (plus the ripple around them)...
+        dirty.inset(-mAddedTouchBounds, -mAddedTouchBounds);
+        dirty.union(finalBounds);
+        //...and the part of the scrubber that grew or shrank
+        if (scrubber.left != oldScrubberLeft) {
+            dirty.union(Math.min(scrubber.left, oldScrubberLeft), scrubber.top,
+                    Math.max(scrubber.left, oldScrubberLeft), scrubber.bottom);
+        }
+        if (scrubber.right != oldScrubberRight) {
+            dirty.union(Math.min(scrubber.right, oldScrubberRight), scrubber.top,
+                    Math.max(scrubber.right, oldScrubberRight), scrubber.bottom);
+        }
+        invalidate(dirty);
+        if (mMetricsSink != null) {
+            mMetricsSink.onInvalidate(this, dirty.width() * dirty.height());
+        }
     }
 
 
@@ -971,7 +2390,8 @@ public class DiscreteSeekBar extends View {
 
     @Override
     protected boolean verifyDrawable(Drawable who) {
-        return who == mThumb || who == mTrack || who == mScrubber || who == mRipple || super.verifyDrawable(who);
+        return who == mThumb || who == mTrack || who == mScrubber || who == mRipple || who == mDots
+                || super.verifyDrawable(who);
     }
 
     private void attemptClaimDrag() {
@@ -990,24 +2410,94 @@ public class DiscreteSeekBar extends View {
 
     private void showFloater() {
         if (!isInEditMode()) {
-            mThumb.animateToPressed();
-            mIndicator.showIndicator(this, mThumb.getBounds());
-            notifyBubble(true);
+            PopupIndicator indicator = ensureIndicator();
+            if (indicator != null) {
+                mThumb.animateToPressed();
+                indicator.showIndicator(this, mThumb.getBounds());
+                notifyBubble(true);
+            }
         }
     }
 
     private void hideFloater() {
         removeCallbacks(mShowIndicatorRunnable);
         if (!isInEditMode()) {
-            mIndicator.dismiss();
+            if (mIndicator != null) {
+                mIndicator.dismiss();
+            }
             notifyBubble(false);
         }
     }
 
+    /**
+     * Creates the indicator (if not created yet) with the current settings.
+     * On shared mode, this leases the shared indicator instead.
+     *
+     * @return the indicator or null if we can't get the shared one (not attached)
+     */
+    private PopupIndicator ensureIndicator() {
+        if (mIndicator == null) {
+            Looper.myQueue().removeIdleHandler(mIndicatorCreator);
+            if (mSharedIndicatorEnabled) {
+                if (mIndicatorPoolToken == null) {
+                    return null;
+                }
+                mIndicator = IndicatorPool.acquire(mIndicatorPoolToken, mFloaterListener);
+                if (mIndicator == null) {
+                    mIndicator = createIndicator();
+                    IndicatorPool.add(mIndicatorPoolToken, mIndicator, mFloaterListener);
+                } else {
+                    //It may have been used by another DiscreteSeekBar with different settings
+                    mIndicator.setTextAppearance(mIndicatorTextAppearance);
+                    mIndicator.setElevation(mIndicatorElevation);
+                    mIndicator.setSizes(mIndicatorThumbSize, mIndicatorSeparation);
+                    mIndicator.updateSizes(mLabelSource);
+                }
+            } else {
+                mIndicator = createIndicator();
+            }
+            mIndicator.setListener(mFloaterListener);
+            mIndicator.setMetricsListener(mMetricsSink != null ? mIndicatorMetrics : null);
+            mIndicator.setColors(mIndicatorStartColor, mIndicatorEndColor);
+            mIndicator.setOverlayEnabled(mIndicatorOverlayEnabled);
+            mIndicator.setCompactWindowEnabled(mIndicatorCompactWindowEnabled);
+            updateProgressMessage(mValue);
+        }
+        return mIndicator;
+    }
+
+    private PopupIndicator createIndicator() {
+        return new PopupIndicator(getContext(), mIndicatorTextAppearance, mIndicatorColor,
+                mIndicatorElevation, mLabelSource, mIndicatorThumbSize, mIndicatorSeparation);
+    }
+
+    private void scheduleIndicatorCreation() {
+        if (mIndicator == null && !isInEditMode()) {
+            MessageQueue queue = Looper.myQueue();
+            //Removing it first so we never add it twice
+            queue.removeIdleHandler(mIndicatorCreator);
+            queue.addIdleHandler(mIndicatorCreator);
+        }
+    }
+
+    private final MessageQueue.IdleHandler mIndicatorCreator = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (mIndicatorPopupEnabled) {
+                ensureIndicator();
+            }
+            return false;
+        }
+    };
+
     private MarkerDrawable.MarkerAnimationListener mFloaterListener = new MarkerDrawable.MarkerAnimationListener() {
         @Override
         public void onClosingComplete() {
             mThumb.animateToNormal();
+            if (mIndicatorSizesPending) {
+                updateIndicatorSizes();
+            }
+            returnSharedIndicator();
         }
 
         @Override
@@ -1017,12 +2507,26 @@ public class DiscreteSeekBar extends View {
 
     };
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollingContainerState = SCROLLING_CONTAINER_UNKNOWN;
+        //We may be on a different display now
+        mFrameIntervalNanos = 0;
+        registerInIndicatorPool();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         removeCallbacks(mShowIndicatorRunnable);
-        if (!isInEditMode()) {
-            mIndicator.dismissComplete();
+        Looper.myQueue().removeIdleHandler(mIndicatorCreator);
+        releaseIndicator();
+        unregisterFromIndicatorPool();
+        flushPostedProgress();
+        flushProgressDispatcher();
+        if (mStaticLayerCache != null) {
+            mStaticLayerCache.release();
         }
     }
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar;
+
+/**
+ * Consistent snapshot of the state of a {@link DiscreteSeekBar}, that can be read from any thread.
+ * <p>
+ * Reuse the same instance on every read, so reading doesn't allocate anything.
+ * </p>
+ *
+ * @see DiscreteSeekBar#readProgressState(ProgressState)
+ */
+public final class ProgressState {
+    int mValue;
+    int mMin;
+    int mMax;
+    boolean mDragging;
+    long mSequence;
+
+    public int getValue() {
+        return mValue;
+    }
+
+    public int getMin() {
+        return mMin;
+    }
+
+    public int getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return true if the user was dragging the thumb
+     */
+    public boolean isDragging() {
+        return mDragging;
+    }
+
+    /**
+     * @return a number that grows every time any of the other fields change,
+     * so readers can tell if something changed since their last read
+     */
+    public long getSequence() {
+        return mSequence;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Mapping between the values of a {@link DiscreteSeekBar} and the positions along its track.
+ * <p>
+ * By default values are spread linearly along the track. Other scales are useful for things
+ * like frequencies, zoom levels or volume where a fixed amount of pixels should mean a ratio
+ * instead of a fixed amount of units.
+ * </p>
+ * <p>
+ * The DiscreteSeekBar doesn't call the scale on every touch event. It precomputes lookup tables
+ * when the size or the MIN-MAX range change, so implementations don't need to be fast,
+ * but they must be monotonic: bigger values must always be at bigger (or equal) positions.
+ * </p>
+ * <p>
+ * This class doesn't depend on any Android API, so it can be benchmarked on a regular JVM.
+ * </p>
+ *
+ * @see DiscreteSeekBar#setValueScale(ValueScale)
+ */
+public abstract class ValueScale {
+
+    /**
+     * Return the position of the value along the track
+     *
+     * @param value the value, between min and max
+     * @param min   the MIN value of the DiscreteSeekBar
+     * @param max   the MAX value of the DiscreteSeekBar
+     * @return the position, between 0 (at min) and 1 (at max)
+     */
+    public abstract float toPosition(float value, int min, int max);
+
+    /**
+     * Return the value at the position along the track. This must be the inverse of {@link #toPosition(float, int, int)}
+     *
+     * @param position the position, between 0 and 1
+     * @param min      the MIN value of the DiscreteSeekBar
+     * @param max      the MAX value of the DiscreteSeekBar
+     * @return the value, between min and max
+     */
+    public abstract float toValue(float position, int min, int max);
+
+    /**
+     * Values spread evenly along the track. This is the default.
+     */
+    public static ValueScale linear() {
+        return new PowerScale(1f);
+    }
+
+    /**
+     * Every ratio between two values takes the same space on the track.
+     * <p>
+     * If MIN is not bigger than 0 the values are offset so MIN maps to 1 before taking the logarithm.
+     * </p>
+     */
+    public static ValueScale logarithmic() {
+        return new LogarithmicScale();
+    }
+
+    /**
+     * The value grows as the position raised to the exponent, that is {@code value = min + (max - min) * position^exponent}.
+     * <p>
+     * Exponents bigger than 1 give more room to the low values, exponents between 0 and 1 give it to the high ones.
+     * </p>
+     *
+     * @param exponent the exponent, must be bigger than 0
+     */
+    public static ValueScale power(float exponent) {
+        if (exponent <= 0) {
+            throw new IllegalArgumentException("exponent must be > 0");
+        }
+        return new PowerScale(exponent);
+    }
+
+    /**
+     * Linear segments between a set of breakpoints.
+     * <p>
+     * Both arrays are normalized to the 0-1 range: a breakpoint at position 0.5 and value 0.1
+     * means the middle of the track is at 10% of the MIN-MAX range. The first breakpoint must be (0, 0),
+     * the last one (1, 1) and both arrays must be increasing.
+     * </p>
+     *
+     * @param positions the positions of the breakpoints along the track
+     * @param values    the (normalized) values of the breakpoints
+     */
+    public static ValueScale piecewise(@NonNull float[] positions, @NonNull float[] values) {
+        final int count = positions.length;
+        if (count < 2 || count != values.length) {
+            throw new IllegalArgumentException("Need the same amount (at least 2) of positions and values");
+        }
+        if (positions[0] != 0 || values[0] != 0 || positions[count - 1] != 1 || values[count - 1] != 1) {
+            throw new IllegalArgumentException("Breakpoints must start at (0, 0) and end at (1, 1)");
+        }
+        for (int i = 1; i < count; i++) {
+            if (positions[i] <= positions[i - 1] || values[i] < values[i - 1]) {
+                throw new IllegalArgumentException("Breakpoints must be increasing");
+            }
+        }
+        return new PiecewiseScale(positions.clone(), values.clone());
+    }
+
+    private static class PowerScale extends ValueScale {
+        private final float mExponent;
+
+        PowerScale(float exponent) {
+            mExponent = exponent;
+        }
+
+        @Override
+        public float toPosition(float value, int min, int max) {
+            float fraction = (value - min) / (float) (max - min);
+            if (fraction <= 0) {
+                return 0;
+            }
+            return mExponent == 1f ? fraction : (float) Math.pow(fraction, 1.0 / mExponent);
+        }
+
+        @Override
+        public float toValue(float position, int min, int max) {
+            if (position <= 0) {
+                return min;
+            }
+            float fraction = mExponent == 1f ? position : (float) Math.pow(position, mExponent);
+            return min + fraction * (max - min);
+        }
+    }
+
+    private static class LogarithmicScale extends ValueScale {
+
+        //The value we need to add so MIN becomes at least 1
+        private static double offset(int min) {
+            return min > 0 ? 0 : 1.0 - min;
+        }
+
+        @Override
+        public float toPosition(float value, int min, int max) {
+            double offset = offset(min);
+            double range = Math.log((max + offset) / (min + offset));
+            return (float) (Math.log((Math.max(value, min) + offset) / (min + offset)) / range);
+        }
+
+        @Override
+        public float toValue(float position, int min, int max) {
+            double offset = offset(min);
+            double start = min + offset;
+            return (float) (start * Math.pow((max + offset) / start, position) - offset);
+        }
+    }
+
+    private static class PiecewiseScale extends ValueScale {
+        private final float[] mPositions;
+        private final float[] mValues;
+
+        PiecewiseScale(float[] positions, float[] values) {
+            mPositions = positions;
+            mValues = values;
+        }
+
+        @Override
+        public float toPosition(float value, int min, int max) {
+            float fraction = (value - min) / (float) (max - min);
+            return interpolate(mValues, mPositions, fraction);
+        }
+
+        @Override
+        public float toValue(float position, int min, int max) {
+            return min + interpolate(mPositions, mValues, position) * (max - min);
+        }
+
+        private static float interpolate(float[] from, float[] to, float x) {
+            final int last = from.length - 1;
+            if (x <= from[0]) {
+                return to[0];
+            } else if (x >= from[last]) {
+                return to[last];
+            }
+            int i = 1;
+            while (from[i] < x) {
+                i++;
+            }
+            float segment = from[i] - from[i - 1];
+            if (segment == 0) {
+                //Flat segment
+                return to[i];
+            }
+            return to[i - 1] + (x - from[i - 1]) / segment * (to[i] - to[i - 1]);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+/**
+ * Keeps the latest touch samples of a drag to estimate its velocity.
+ * <p>
+ * Samples are stored in a fixed size ring, so adding them never allocates.
+ * Only the samples inside a small time window are used, and the velocity
+ * is the least squares slope of the position over time.
+ * </p>
+ *
+ * @hide
+ */
+public class DragTracker {
+    //Must be a power of 2
+    private static final int MAX_SAMPLES = 16;
+    //Older samples don't say much about the current velocity
+    private static final long HORIZON_MS = 100;
+
+    private final long[] mTimes = new long[MAX_SAMPLES];
+    private final float[] mPositions = new float[MAX_SAMPLES];
+    //Index of the next sample to write
+    private int mNext;
+    private int mCount;
+
+    public void clear() {
+        mNext = 0;
+        mCount = 0;
+    }
+
+    /**
+     * @param timeMillis the time of the sample, in the {@link android.os.SystemClock#uptimeMillis()} time base
+     * @param position   the position of the sample
+     */
+    public void addSample(long timeMillis, float position) {
+        mTimes[mNext] = timeMillis;
+        mPositions[mNext] = position;
+        mNext = (mNext + 1) & (MAX_SAMPLES - 1);
+        if (mCount < MAX_SAMPLES) {
+            mCount++;
+        }
+    }
+
+    /**
+     * @return the velocity in position units per second, or 0 if there aren't enough samples
+     */
+    public float getVelocity() {
+        if (mCount < 2) {
+            return 0;
+        }
+        final int newest = (mNext - 1) & (MAX_SAMPLES - 1);
+        final long newestTime = mTimes[newest];
+        //Everything is relative to the newest sample to keep the numbers small
+        double sumT = 0, sumX = 0, sumTT = 0, sumTX = 0;
+        int used = 0;
+        for (int i = 0; i < mCount; i++) {
+            int index = (newest - i) & (MAX_SAMPLES - 1);
+            long age = newestTime - mTimes[index];
+            if (age > HORIZON_MS) {
+                break;
+            }
+            double t = -age;
+            double x = mPositions[index] - mPositions[newest];
+            sumT += t;
+            sumX += x;
+            sumTT += t * t;
+            sumTX += t * x;
+            used++;
+        }
+        if (used < 2) {
+            return 0;
+        }
+        double denominator = used * sumTT - sumT * sumT;
+        if (denominator == 0) {
+            //All the samples at the same time
+            return 0;
+        }
+        double slope = (used * sumTX - sumT * sumX) / denominator;
+        return (float) (slope * 1000);
+    }
+}
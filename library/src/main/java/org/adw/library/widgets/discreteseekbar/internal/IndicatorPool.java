@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import android.os.IBinder;
+
+import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
+
+import java.util.HashMap;
+
+/**
+ * Pool of {@link PopupIndicator} shared by all the DiscreteSeekBars on the same Window.
+ * <p>
+ * Only one DiscreteSeekBar can be dragged at a time, so there's no need for every one of them
+ * to keep its own indicator. They register here while attached to a Window,
+ * lease the shared indicator when they need to show it and return it once it's closed.
+ * </p>
+ * <p>
+ * The owner of the lease is identified by its {@link MarkerDrawable.MarkerAnimationListener}.
+ * If the indicator is leased while another owner still has it (for example while it's still closing)
+ * it gets forcibly dismissed and the previous owner receives {@link MarkerDrawable.MarkerAnimationListener#onClosingComplete()}.
+ * </p>
+ * <p>
+ * The leaser is responsible for re-applying its own settings (colors, sizes, text appearance...) to the indicator.
+ * This class must only be used from the UI thread.
+ * </p>
+ *
+ * @hide
+ */
+public class IndicatorPool {
+    private static final HashMap<IBinder, Entry> sEntries = new HashMap<IBinder, Entry>();
+
+    private static class Entry {
+        PopupIndicator indicator;
+        MarkerDrawable.MarkerAnimationListener owner;
+        //Amount of registered users on this Window
+        int users;
+    }
+
+    private IndicatorPool() {
+    }
+
+    /**
+     * Registers a new user of the shared indicator for the Window
+     */
+    public static void register(IBinder windowToken) {
+        Entry entry = sEntries.get(windowToken);
+        if (entry == null) {
+            entry = new Entry();
+            sEntries.put(windowToken, entry);
+        }
+        entry.users++;
+    }
+
+    /**
+     * Unregisters a user of the shared indicator for the Window.
+     * When there're no users left the indicator is released.
+     */
+    public static void unregister(IBinder windowToken) {
+        Entry entry = sEntries.get(windowToken);
+        if (entry != null && --entry.users <= 0) {
+            sEntries.remove(windowToken);
+            if (entry.indicator != null) {
+                entry.indicator.release();
+            }
+        }
+    }
+
+    /**
+     * Leases the indicator for the Window
+     *
+     * @param windowToken a registered window token
+     * @param owner       the new owner of the lease
+     * @return the shared indicator or null if it doesn't exist yet (see {@link #add})
+     */
+    public static PopupIndicator acquire(IBinder windowToken, MarkerDrawable.MarkerAnimationListener owner) {
+        Entry entry = sEntries.get(windowToken);
+        if (entry == null || entry.indicator == null) {
+            return null;
+        }
+        MarkerDrawable.MarkerAnimationListener previous = entry.owner;
+        entry.owner = owner;
+        if (previous != null && previous != owner) {
+            //Take it from the previous owner
+            entry.indicator.dismissComplete();
+            previous.onClosingComplete();
+        }
+        entry.indicator.setListener(owner);
+        return entry.indicator;
+    }
+
+    /**
+     * Adds the indicator to the pool as the shared one for the Window, already leased to the owner
+     */
+    public static void add(IBinder windowToken, PopupIndicator indicator, MarkerDrawable.MarkerAnimationListener owner) {
+        Entry entry = sEntries.get(windowToken);
+        if (entry == null) {
+            //Nobody registered, so nobody would ever release it
+            return;
+        }
+        if (entry.indicator != null && entry.indicator != indicator) {
+            entry.indicator.release();
+        }
+        entry.indicator = indicator;
+        entry.owner = owner;
+    }
+
+    /**
+     * Returns the leased indicator to the pool. Does nothing if the owner doesn't own the lease anymore
+     */
+    public static void release(IBinder windowToken, MarkerDrawable.MarkerAnimationListener owner) {
+        Entry entry = sEntries.get(windowToken);
+        if (entry != null && entry.owner == owner) {
+            entry.owner = null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Replacement for {@link java.util.Formatter} for the most common indicator formats
+ * like "%d", "%d%%" or "%d ms".
+ * <p>
+ * The pattern is compiled once into a prefix, a single integer slot and a suffix.
+ * Formatting a value just writes its digits into a reused char array, so it doesn't allocate anything.
+ * </p>
+ * <p>
+ * Only literal text, "%%" escapes and exactly one "%d" (without flags, width or argument index)
+ * are supported. For anything else {@link #compile(String, java.util.Locale)} returns null
+ * and the caller should keep using {@link java.util.Formatter}.
+ * </p>
+ *
+ * @hide
+ */
+public class IntegerLabelFormatter {
+    //Max amount of chars of an int: "-2147483648"
+    private static final int MAX_INT_CHARS = 11;
+
+    private final char[] mPrefix;
+    private final char[] mSuffix;
+    //Digits are "translated" to the locale, the same way Formatter does
+    private final char mZeroDigit;
+    private final Locale mLocale;
+    //Buffer handed to the TextView
+    private final char[] mBuffer;
+    private int mLength;
+    //Buffer used to build Strings, so we never touch the one the TextView may be holding
+    private char[] mStringBuffer;
+
+    private IntegerLabelFormatter(char[] prefix, char[] suffix, Locale locale) {
+        mPrefix = prefix;
+        mSuffix = suffix;
+        mLocale = locale;
+        mZeroDigit = new DecimalFormatSymbols(locale).getZeroDigit();
+        mBuffer = createBuffer();
+    }
+
+    private char[] createBuffer() {
+        char[] buffer = new char[mPrefix.length + MAX_INT_CHARS + mSuffix.length];
+        System.arraycopy(mPrefix, 0, buffer, 0, mPrefix.length);
+        return buffer;
+    }
+
+    /**
+     * Compiles the pattern for the given Locale
+     *
+     * @param pattern a {@link java.util.Formatter} pattern
+     * @param locale  the Locale used to translate the digits
+     * @return the compiled formatter or null if the pattern is not supported
+     */
+    public static IntegerLabelFormatter compile(String pattern, Locale locale) {
+        StringBuilder prefix = new StringBuilder();
+        StringBuilder suffix = new StringBuilder();
+        StringBuilder current = prefix;
+        boolean foundSlot = false;
+        final int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                current.append(c);
+                continue;
+            }
+            if (++i >= length) {
+                return null;
+            }
+            char conversion = pattern.charAt(i);
+            if (conversion == '%') {
+                current.append('%');
+            } else if (conversion == 'd' && !foundSlot) {
+                foundSlot = true;
+                current = suffix;
+            } else {
+                //flags, width, more than one argument, other conversions...
+                return null;
+            }
+        }
+        if (!foundSlot) {
+            return null;
+        }
+        return new IntegerLabelFormatter(toChars(prefix), toChars(suffix), locale);
+    }
+
+    private static char[] toChars(StringBuilder builder) {
+        char[] chars = new char[builder.length()];
+        builder.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Formats the value into the internal buffer.
+     * The result stays valid until the next call to this method.
+     *
+     * @param value the value to format
+     * @see #getBuffer()
+     * @see #length()
+     */
+    public void format(int value) {
+        mLength = format(value, mBuffer);
+    }
+
+    /**
+     * Formats the value into a new String.
+     * This won't modify the contents of {@link #getBuffer()}
+     *
+     * @param value the value to format
+     * @return the formatted value
+     */
+    public String formatToString(int value) {
+        if (mStringBuffer == null) {
+            mStringBuffer = createBuffer();
+        }
+        int length = format(value, mStringBuffer);
+        return new String(mStringBuffer, 0, length);
+    }
+
+    private int format(int value, char[] buffer) {
+        int pos = mPrefix.length;
+        //We work with negative numbers so Integer.MIN_VALUE doesn't overflow
+        int remaining = value;
+        if (value < 0) {
+            buffer[pos++] = '-';
+        } else {
+            remaining = -value;
+        }
+        int digits = 1;
+        for (int i = remaining / 10; i != 0; i /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        final char zero = mZeroDigit;
+        for (int i = end - 1; i >= pos; i--) {
+            int next = remaining / 10;
+            buffer[i] = (char) (zero + (next * 10 - remaining));
+            remaining = next;
+        }
+        System.arraycopy(mSuffix, 0, buffer, end, mSuffix.length);
+        return end + mSuffix.length;
+    }
+
+    /**
+     * @return the buffer holding the last formatted value
+     */
+    public char[] getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * @return the amount of valid chars in {@link #getBuffer()}
+     */
+    public int length() {
+        return mLength;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Small cache to hold the already formatted indicator labels, indexed by value.
+ * <p>
+ * It gets filled lazily while the user drags the thumb around, so each label is formatted only once.
+ * </p>
+ * <p>
+ * Small ranges get one slot per value between MIN and MAX. Huge ranges share a fixed amount of slots
+ * where the most recently used label wins, so the memory used is bounded no matter the range.
+ * </p>
+ * <p>
+ * The cache clears itself when the default {@link java.util.Locale} changes. The owner must call
+ * {@link #reset(int, int)} when the range or the way labels are built changes.
+ * </p>
+ *
+ * @hide
+ */
+public class LabelCache {
+    //Ranges up to this amount of values get a slot per value
+    static final int MAX_DENSE_SIZE = 1024;
+    //Ranges bigger than MAX_DENSE_SIZE share this amount of slots. Must be a power of 2
+    static final int SPARSE_SIZE = 256;
+
+    private int mMin;
+    private int mSize;
+    private boolean mDense;
+    private String[] mLabels;
+    //Only used on sparse mode to know which value is stored on each slot
+    private int[] mKeys;
+    private Locale mLocale;
+
+    public LabelCache(int min, int max) {
+        reset(min, max);
+    }
+
+    /**
+     * Drops every cached label and adapts the slots to a new MIN-MAX range
+     */
+    public void reset(int min, int max) {
+        mMin = min;
+        long size = (long) max - min + 1;
+        boolean dense = size <= MAX_DENSE_SIZE;
+        int slots = dense ? (int) size : SPARSE_SIZE;
+        mLocale = Locale.getDefault();
+        if (mLabels != null && dense == mDense && mLabels.length >= slots) {
+            Arrays.fill(mLabels, null);
+        } else {
+            //The mode or the size changed, we'll allocate them on the first put()
+            mLabels = null;
+            mKeys = null;
+        }
+        mDense = dense;
+        mSize = slots;
+    }
+
+    /**
+     * Retrieves the cached label for the value
+     *
+     * @param value the value (before any transformation)
+     * @return the cached label or null if it's not cached yet
+     */
+    public String get(int value) {
+        if (mLabels == null) {
+            return null;
+        }
+        Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            mLocale = locale;
+            Arrays.fill(mLabels, null);
+            return null;
+        }
+        int index = indexOf(value);
+        if (index < 0) {
+            return null;
+        }
+        if (!mDense && mKeys[index] != value) {
+            return null;
+        }
+        return mLabels[index];
+    }
+
+    /**
+     * Stores the label for the value
+     *
+     * @param value the value (before any transformation)
+     * @param label the label to be shown on the indicator
+     */
+    public void put(int value, String label) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return;
+        }
+        if (mLabels == null) {
+            mLabels = new String[mSize];
+        }
+        if (!mDense) {
+            if (mKeys == null) {
+                mKeys = new int[SPARSE_SIZE];
+            }
+            mKeys[index] = value;
+        }
+        mLabels[index] = label;
+    }
+
+    private int indexOf(int value) {
+        long offset = (long) value - mMin;
+        if (offset < 0) {
+            return -1;
+        }
+        if (mDense) {
+            return offset < mSize ? (int) offset : -1;
+        }
+        //Consecutive values never collide, which is what happens while dragging
+        return (int) (offset & (SPARSE_SIZE - 1));
+    }
+}
@@ -18,12 +18,10 @@ package org.adw.library.widgets.discreteseekbar.internal;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.v4.view.ViewCompat;
-import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.View;
@@ -31,8 +29,8 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
-import org.adw.library.widgets.discreteseekbar.R;
 import org.adw.library.widgets.discreteseekbar.internal.compat.SeekBarCompat;
+import org.adw.library.widgets.discreteseekbar.internal.compat.TraceCompat;
 import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
 
 /**
@@ -45,9 +43,10 @@ import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
  *
  * @hide
  */
-public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationListener {
+public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationListener,
+        MarkerDrawable.OnShapeChangeListener {
     private static final int PADDING_DP = 4;
-    private static final int ELEVATION_DP = 8;
+    private static final String TRACE_RESET_SIZES = "Marker#resetSizes";
     //The TextView to show the info
     private TextView mNumber;
     //The max width of this View
@@ -55,26 +54,35 @@ public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationL
     //some distance between the thumb and our bubble marker.
     //This will be added to our measured height
     private int mSeparation;
+    private int mTextAppearanceId;
+    //The last label we measured on resetSizes
+    private String mMeasuredLabel;
     MarkerDrawable mMarkerDrawable;
 
-    public Marker(Context context, AttributeSet attrs, int defStyleAttr, String maxValue, int thumbSize, int separation) {
-        super(context, attrs, defStyleAttr);
-        //as we're reading the parent DiscreteSeekBar attributes, it may wrongly set this view's visibility.
-        setVisibility(View.VISIBLE);
-        
+    /**
+     * The attributes are resolved by the DiscreteSeekBar, so this can be created lazily,
+     * long after the DiscreteSeekBar AttributeSet is gone.
+     *
+     * @param context
+     * @param textAppearanceId the dsb_indicatorTextAppearance
+     * @param color            the dsb_indicatorColor
+     * @param elevation        the dsb_indicatorElevation
+     * @param labels           how the labels are built, to find the widest one
+     * @param thumbSize        size of the closed marker
+     * @param separation       distance between the thumb and the marker
+     */
+    public Marker(Context context, int textAppearanceId, ColorStateList color, float elevation,
+                  WidestLabel.Source labels, int thumbSize, int separation) {
+        super(context);
         DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.DiscreteSeekBar,
-                R.attr.discreteSeekBarStyle, R.style.Widget_DiscreteSeekBar);
 
         int padding = (int) (PADDING_DP * displayMetrics.density) * 2;
-        int textAppearanceId = a.getResourceId(R.styleable.DiscreteSeekBar_dsb_indicatorTextAppearance,
-                R.style.Widget_DiscreteIndicatorTextAppearance);
         mNumber = new TextView(context);
         //Add some padding to this textView so the bubble has some space to breath
         mNumber.setPadding(padding, 0, padding, 0);
+        mTextAppearanceId = textAppearanceId;
         mNumber.setTextAppearance(context, textAppearanceId);
         mNumber.setGravity(Gravity.CENTER);
-        mNumber.setText(maxValue);
         mNumber.setMaxLines(1);
         mNumber.setSingleLine(true);
         SeekBarCompat.setTextDirection(mNumber, TEXT_DIRECTION_LOCALE);
@@ -84,37 +92,71 @@ public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationL
         //I'm sure there are better ways of doing this...
         setPadding(padding, padding, padding, padding);
 
-        resetSizes(maxValue);
+        resetSizes(labels);
 
         mSeparation = separation;
-        ColorStateList color = a.getColorStateList(R.styleable.DiscreteSeekBar_dsb_indicatorColor);
         mMarkerDrawable = new MarkerDrawable(color, thumbSize);
         mMarkerDrawable.setCallback(this);
         mMarkerDrawable.setMarkerListener(this);
         mMarkerDrawable.setExternalOffset(padding);
 
         //Elevation for anroid 5+
-        float elevation = a.getDimension(R.styleable.DiscreteSeekBar_dsb_indicatorElevation, ELEVATION_DP * displayMetrics.density);
         ViewCompat.setElevation(this, elevation);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             SeekBarCompat.setOutlineProvider(this, mMarkerDrawable);
+            mMarkerDrawable.setOnShapeChangeListener(this);
         }
-        a.recycle();
     }
 
-    public void resetSizes(String maxValue) {
-        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
-        //Account for negative numbers... is there any proper way of getting the biggest string between our range????
-        mNumber.setText("-" + maxValue);
-        //Do a first forced measure call for the TextView (with the biggest text content),
-        //to calculate the max width and use always the same.
-        //this avoids the TextView from shrinking and growing when the text content changes
-        int wSpec = MeasureSpec.makeMeasureSpec(displayMetrics.widthPixels, MeasureSpec.AT_MOST);
-        int hSpec = MeasureSpec.makeMeasureSpec(displayMetrics.heightPixels, MeasureSpec.AT_MOST);
-        mNumber.measure(wSpec, hSpec);
-        mWidth = Math.max(mNumber.getMeasuredWidth(), mNumber.getMeasuredHeight());
-        removeView(mNumber);
-        addView(mNumber, new FrameLayout.LayoutParams(mWidth, mWidth, Gravity.LEFT | Gravity.TOP));
+    /**
+     * Measures the widest label and uses its size from now on
+     *
+     * @param labels how the labels are built
+     */
+    public void resetSizes(WidestLabel.Source labels) {
+        String widest = WidestLabel.find(labels, mNumber.getPaint());
+        if (widest.equals(mMeasuredLabel)) {
+            //Nothing changed since the last time
+            return;
+        }
+        mMeasuredLabel = widest;
+        TraceCompat.beginSection(TRACE_RESET_SIZES);
+        try {
+            DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+            mNumber.setText(widest);
+            //Do a first forced measure call for the TextView (with the biggest text content),
+            //to calculate the max width and use always the same.
+            //this avoids the TextView from shrinking and growing when the text content changes
+            int wSpec = MeasureSpec.makeMeasureSpec(displayMetrics.widthPixels, MeasureSpec.AT_MOST);
+            int hSpec = MeasureSpec.makeMeasureSpec(displayMetrics.heightPixels, MeasureSpec.AT_MOST);
+            mNumber.measure(wSpec, hSpec);
+            mWidth = Math.max(mNumber.getMeasuredWidth(), mNumber.getMeasuredHeight());
+            removeView(mNumber);
+            addView(mNumber, new FrameLayout.LayoutParams(mWidth, mWidth, Gravity.LEFT | Gravity.TOP));
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    public void setTextAppearance(int textAppearanceId) {
+        if (textAppearanceId != mTextAppearanceId) {
+            mTextAppearanceId = textAppearanceId;
+            mNumber.setTextAppearance(getContext(), textAppearanceId);
+            //Sizes need to be measured again
+            mMeasuredLabel = null;
+        }
+    }
+
+    public void setSizes(int thumbSize, int separation) {
+        mMarkerDrawable.setClosedStateSize(thumbSize);
+        if (separation != mSeparation) {
+            mSeparation = separation;
+            requestLayout();
+        }
+    }
+
+    public void setMarkerElevation(float elevation) {
+        ViewCompat.setElevation(this, elevation);
     }
 
     @Override
@@ -168,6 +210,15 @@ public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationL
         mNumber.setText(value);
     }
 
+    /**
+     * Sets the value from a char buffer.
+     * The TextView reuses its internal wrapper for the chars, so this doesn't allocate any String.
+     * The buffer must not be modified until the next call to any setValue method.
+     */
+    public void setValue(char[] value, int start, int length) {
+        mNumber.setText(value, start, length);
+    }
+
     public CharSequence getValue() {
         return mNumber.getText();
     }
@@ -198,6 +249,12 @@ public class Marker extends ViewGroup implements MarkerDrawable.MarkerAnimationL
         }
     }
 
+    @Override
+    public void onShapeChanged(MarkerDrawable drawable) {
+        //Only rebuild the outline when the shape really changed
+        SeekBarCompat.invalidateOutline(this);
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
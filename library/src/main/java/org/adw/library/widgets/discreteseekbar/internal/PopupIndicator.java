@@ -17,20 +17,23 @@
 package org.adw.library.widgets.discreteseekbar.internal;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.os.IBinder;
 import android.support.v4.view.GravityCompat;
-import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
 
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
 import org.adw.library.widgets.discreteseekbar.internal.compat.SeekBarCompat;
+import org.adw.library.widgets.discreteseekbar.internal.compat.TraceCompat;
 import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
 
 /**
@@ -39,6 +42,14 @@ import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
  * <p>
  * This will attach a View to the Window (full-width, measured-height, positioned just under the thumb)
  * </p>
+ * <p>
+ * Optionally (API>=18) the View can be hosted in the {@link android.view.ViewGroupOverlay} of the root View
+ * instead. In that mode it's added only once and then just shown/hidden, avoiding the WindowManager round-trips.
+ * </p>
+ * <p>
+ * Also optionally, the Window can be just as big as the marker and be moved around following the thumb
+ * (and the anchor View, if it gets scrolled) with at most one {@link android.view.WindowManager#updateViewLayout} per frame.
+ * </p>
  *
  * @hide
  * @see #showIndicator(android.view.View, android.graphics.Rect)
@@ -47,6 +58,18 @@ import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
  * @see org.adw.library.widgets.discreteseekbar.internal.PopupIndicator.Floater
  */
 public class PopupIndicator {
+    //Trace section names
+    private static final String TRACE_SHOW = "PopupIndicator#showIndicator";
+    private static final String TRACE_DISMISS = "PopupIndicator#dismissComplete";
+
+    /**
+     * Listener to measure how long it takes to add/remove the indicator
+     */
+    public interface MetricsListener {
+        void onIndicatorAdded(long durationNanos);
+
+        void onIndicatorRemoved(long durationNanos);
+    }
 
     private final WindowManager mWindowManager;
     private boolean mShowing;
@@ -56,18 +79,34 @@ public class PopupIndicator {
     //MarkerDrawable->Marker->Floater->mListener->DiscreteSeekBar....
     //... phew!
     private MarkerDrawable.MarkerAnimationListener mListener;
+    private MetricsListener mMetricsListener;
     private int[] mDrawingLocation = new int[2];
+    private int[] mHostLocation = new int[2];
     Point screenSize = new Point();
-
-    public PopupIndicator(Context context, AttributeSet attrs, int defStyleAttr, String maxValue, int thumbSize, int separation) {
+    private boolean mOverlayEnabled;
+    //The View whose overlay is currently holding our Floater (if any)
+    private ViewGroup mOverlayHost;
+    //Compact window mode: the Window is as big as the marker and moves following the thumb
+    private boolean mCompactWindow;
+    private WindowManager.LayoutParams mLayoutParams;
+    private View mAnchor;
+    private ViewTreeObserver mAnchorObserver;
+    //Thumb center, relative to the anchor
+    private int mThumbX;
+    private int mYOffset;
+    private boolean mLayoutUpdatePending;
+    private int[] mTempLocation = new int[2];
+
+    public PopupIndicator(Context context, int textAppearanceId, ColorStateList color, float elevation,
+                          WidestLabel.Source labels, int thumbSize, int separation) {
         mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        mPopupView = new Floater(context, attrs, defStyleAttr, maxValue, thumbSize, separation);
+        mPopupView = new Floater(context, textAppearanceId, color, elevation, labels, thumbSize, separation);
     }
 
-    public void updateSizes(String maxValue) {
+    public void updateSizes(WidestLabel.Source labels) {
         dismissComplete();
         if (mPopupView != null) {
-            mPopupView.mMarker.resetSizes(maxValue);
+            mPopupView.mMarker.resetSizes(labels);
         }
     }
 
@@ -75,12 +114,48 @@ public class PopupIndicator {
         mListener = listener;
     }
 
+    public void setTextAppearance(int textAppearanceId) {
+        mPopupView.mMarker.setTextAppearance(textAppearanceId);
+    }
+
+    public void setElevation(float elevation) {
+        mPopupView.mMarker.setMarkerElevation(elevation);
+    }
+
+    public void setSizes(int thumbSize, int separation) {
+        mPopupView.mMarker.setSizes(thumbSize, separation);
+    }
+
+    /**
+     * Make the Window as big as the marker, moving the whole Window with the thumb,
+     * instead of using a full-width Window and moving the marker inside it.
+     */
+    public void setCompactWindowEnabled(boolean enabled) {
+        if (enabled != mCompactWindow) {
+            dismissComplete();
+            mCompactWindow = enabled;
+        }
+    }
+
+    /**
+     * Use the root View overlay instead of a new Window to show the indicator when possible.
+     * It will fall back to the Window on API levels without overlays.
+     */
+    public void setOverlayEnabled(boolean enabled) {
+        if (enabled != mOverlayEnabled) {
+            release();
+            mOverlayEnabled = enabled && SeekBarCompat.isOverlaySupported();
+        }
+    }
+
     /**
      * We want the Floater to be full-width because the contents will be moved from side to side.
      * We may/should change this in the future to use just the PARENT View width and/or pass it in the constructor
      */
     private void measureFloater() {
-        int specWidth = View.MeasureSpec.makeMeasureSpec(screenSize.x, View.MeasureSpec.EXACTLY);
+        //On compact mode we just want it as big as the marker
+        int specMode = mCompactWindow ? View.MeasureSpec.AT_MOST : View.MeasureSpec.EXACTLY;
+        int specWidth = View.MeasureSpec.makeMeasureSpec(screenSize.x, specMode);
         int specHeight = View.MeasureSpec.makeMeasureSpec(screenSize.y, View.MeasureSpec.AT_MOST);
         mPopupView.measure(specWidth, specHeight);
     }
@@ -89,6 +164,14 @@ public class PopupIndicator {
         mPopupView.mMarker.setValue(value);
     }
 
+    public void setValue(char[] value, int start, int length) {
+        mPopupView.mMarker.setValue(value, start, length);
+    }
+
+    public void setMetricsListener(MetricsListener listener) {
+        mMetricsListener = listener;
+    }
+
     public boolean isShowing() {
         return mShowing;
     }
@@ -98,6 +181,28 @@ public class PopupIndicator {
             mPopupView.mMarker.animateOpen();
             return;
         }
+        TraceCompat.beginSection(TRACE_SHOW);
+        try {
+            final MetricsListener metrics = mMetricsListener;
+            if (metrics != null) {
+                long start = System.nanoTime();
+                addIndicator(parent, touchBounds);
+                if (isShowing()) {
+                    metrics.onIndicatorAdded(System.nanoTime() - start);
+                }
+            } else {
+                addIndicator(parent, touchBounds);
+            }
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    private void addIndicator(View parent, Rect touchBounds) {
+        if (mOverlayEnabled && parent.getRootView() instanceof ViewGroup) {
+            showInOverlay(parent, (ViewGroup) parent.getRootView(), touchBounds);
+            return;
+        }
 
         IBinder windowToken = parent.getWindowToken();
         if (windowToken != null) {
@@ -107,7 +212,11 @@ public class PopupIndicator {
             updateLayoutParamsForPosiion(parent, p, touchBounds.bottom);
             mShowing = true;
 
-            translateViewIntoPosition(touchBounds.centerX());
+            if (mCompactWindow) {
+                startFollowing(parent, p, touchBounds);
+            } else {
+                translateViewIntoPosition(touchBounds.centerX());
+            }
             invokePopup(p);
         }
     }
@@ -116,7 +225,12 @@ public class PopupIndicator {
         if (!isShowing()) {
             return;
         }
-        translateViewIntoPosition(x);
+        if (mLayoutParams != null) {
+            mThumbX = x;
+            scheduleLayoutUpdate();
+        } else {
+            translateViewIntoPosition(x);
+        }
     }
 
     public void setColors(int startColor, int endColor) {
@@ -135,8 +249,33 @@ public class PopupIndicator {
      * You typically calls this when the parent view is being removed from the window to avoid a Window Leak
      */
     public void dismissComplete() {
+        if (!isShowing()) {
+            return;
+        }
+        TraceCompat.beginSection(TRACE_DISMISS);
+        try {
+            final MetricsListener metrics = mMetricsListener;
+            if (metrics != null) {
+                long start = System.nanoTime();
+                removeIndicator();
+                metrics.onIndicatorRemoved(System.nanoTime() - start);
+            } else {
+                removeIndicator();
+            }
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    private void removeIndicator() {
         if (isShowing()) {
             mShowing = false;
+            stopFollowing();
+            if (mOverlayHost != null) {
+                //Keep it in the overlay, we'll just show it again next time
+                mPopupView.setVisibility(View.INVISIBLE);
+                return;
+            }
             try {
                 mWindowManager.removeViewImmediate(mPopupView);
             } finally {
@@ -144,6 +283,120 @@ public class PopupIndicator {
         }
     }
 
+    /**
+     * Like {@link #dismissComplete()} but also removes the indicator from the overlay host, if any.
+     * You typically call this when the parent view is being removed from the window.
+     */
+    public void release() {
+        dismissComplete();
+        if (mOverlayHost != null) {
+            SeekBarCompat.removeFromOverlay(mOverlayHost, mPopupView);
+            mOverlayHost = null;
+        }
+    }
+
+    private void showInOverlay(View anchor, ViewGroup host, Rect touchBounds) {
+        if (mOverlayHost != host) {
+            release();
+            mPopupView.setVisibility(View.INVISIBLE);
+            SeekBarCompat.addToOverlay(host, mPopupView);
+            mOverlayHost = host;
+        }
+        //Overlays don't layout their children, so we do it ourselves
+        screenSize.set(host.getWidth(), host.getHeight());
+        measureFloater();
+        int measuredHeight = mPopupView.getMeasuredHeight();
+        int paddingBottom = mPopupView.mMarker.getPaddingBottom();
+        anchor.getLocationInWindow(mDrawingLocation);
+        host.getLocationInWindow(mHostLocation);
+        mDrawingLocation[0] -= mHostLocation[0];
+        mDrawingLocation[1] -= mHostLocation[1];
+        int top = mDrawingLocation[1] - measuredHeight + touchBounds.bottom + paddingBottom;
+        mPopupView.layout(0, top, screenSize.x, top + measuredHeight);
+        mShowing = true;
+
+        translateViewIntoPosition(touchBounds.centerX());
+        mPopupView.setVisibility(View.VISIBLE);
+        mPopupView.mMarker.animateOpen();
+    }
+
+    private void startFollowing(View anchor, WindowManager.LayoutParams p, Rect touchBounds) {
+        mLayoutParams = p;
+        mAnchor = anchor;
+        mThumbX = touchBounds.centerX();
+        mYOffset = touchBounds.bottom;
+        //The marker stays at the center of the Window, we move the Window itself
+        mPopupView.setFloatOffset(p.width / 2);
+        updateFollowingPosition();
+        mAnchorObserver = anchor.getViewTreeObserver();
+        mAnchorObserver.addOnPreDrawListener(mAnchorTracker);
+    }
+
+    private void stopFollowing() {
+        if (mLayoutParams == null) {
+            return;
+        }
+        if (mAnchorObserver != null && mAnchorObserver.isAlive()) {
+            mAnchorObserver.removeOnPreDrawListener(mAnchorTracker);
+        }
+        AnimationClock.getInstance().removeFrameCallback(mLayoutUpdater);
+        mLayoutUpdatePending = false;
+        mAnchorObserver = null;
+        mAnchor = null;
+        mLayoutParams = null;
+    }
+
+    /**
+     * Computes the Window position from the anchor position and the thumb position
+     *
+     * @return true if the position changed
+     */
+    private boolean updateFollowingPosition() {
+        final WindowManager.LayoutParams p = mLayoutParams;
+        mAnchor.getLocationInWindow(mDrawingLocation);
+        int x = mDrawingLocation[0] + mThumbX - p.width / 2;
+        int y = mDrawingLocation[1] - p.height + mYOffset + mPopupView.mMarker.getPaddingBottom();
+        if (x != p.x || y != p.y) {
+            p.x = x;
+            p.y = y;
+            return true;
+        }
+        return false;
+    }
+
+    private void scheduleLayoutUpdate() {
+        if (!mLayoutUpdatePending) {
+            mLayoutUpdatePending = true;
+            AnimationClock.getInstance().addFrameCallback(mLayoutUpdater);
+        }
+    }
+
+    //Moves the Window at most once per frame
+    private final AnimationClock.FrameCallback mLayoutUpdater = new AnimationClock.FrameCallback() {
+        @Override
+        public void onAnimationFrame(long frameTimeMillis) {
+            AnimationClock.getInstance().removeFrameCallback(this);
+            mLayoutUpdatePending = false;
+            if (isShowing() && mLayoutParams != null && updateFollowingPosition()) {
+                mWindowManager.updateViewLayout(mPopupView, mLayoutParams);
+            }
+        }
+    };
+
+    //Follows the anchor if it gets moved (for example when its parent scrolls)
+    private final ViewTreeObserver.OnPreDrawListener mAnchorTracker = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (mAnchor != null) {
+                mAnchor.getLocationInWindow(mTempLocation);
+                if (mTempLocation[0] != mDrawingLocation[0] || mTempLocation[1] != mDrawingLocation[1]) {
+                    scheduleLayoutUpdate();
+                }
+            }
+            return true;
+        }
+    };
+
     private void updateLayoutParamsForPosiion(View anchor, WindowManager.LayoutParams p, int yOffset) {
         DisplayMetrics displayMetrics = anchor.getResources().getDisplayMetrics();
         screenSize.set(displayMetrics.widthPixels, displayMetrics.heightPixels);
@@ -154,7 +407,7 @@ public class PopupIndicator {
         anchor.getLocationInWindow(mDrawingLocation);
         p.x = 0;
         p.y = mDrawingLocation[1] - measuredHeight + yOffset + paddingBottom;
-        p.width = screenSize.x;
+        p.width = mCompactWindow ? mPopupView.getMeasuredWidth() : screenSize.x;
         p.height = measuredHeight;
     }
 
@@ -213,9 +466,10 @@ public class PopupIndicator {
         private Marker mMarker;
         private int mOffset;
 
-        public Floater(Context context, AttributeSet attrs, int defStyleAttr, String maxValue, int thumbSize, int separation) {
+        public Floater(Context context, int textAppearanceId, ColorStateList color, float elevation,
+                       WidestLabel.Source labels, int thumbSize, int separation) {
             super(context);
-            mMarker = new Marker(context, attrs, defStyleAttr, maxValue, thumbSize, separation);
+            mMarker = new Marker(context, textAppearanceId, color, elevation, labels, thumbSize, separation);
             addView(mMarker, new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.LEFT | Gravity.TOP));
         }
 
@@ -223,6 +477,9 @@ public class PopupIndicator {
         protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
             measureChildren(widthMeasureSpec, heightMeasureSpec);
             int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+            if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.AT_MOST) {
+                widthSize = Math.min(widthSize, mMarker.getMeasuredWidth());
+            }
             int heightSie = mMarker.getMeasuredHeight();
             setMeasuredDimension(widthSize, heightSie);
         }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single producer, single consumer ring buffer of timestamped progress changes.
+ * <p>
+ * The UI thread offers every change and one other thread drains them, without locks or allocations.
+ * The producer and the consumer only write their own index, published with ordered writes.
+ * When the buffer is full new changes are dropped (and counted) instead of overwriting the ones
+ * the consumer may be reading.
+ * </p>
+ *
+ * @hide
+ */
+public class ProgressChangeBuffer {
+    //Biggest power of 2 that fits in an int
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private final int mMask;
+    private final long[] mTimes;
+    private final int[] mValues;
+    //Next position to read, only written by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+    //Next position to write, only written by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    //Producer side copy of the head, so we don't read the consumer's index on every offer
+    private long mCachedHead;
+
+    /**
+     * @param capacity the amount of changes kept, from 1 to {@link #MAX_CAPACITY}. Rounded up to a power of 2
+     */
+    public ProgressChangeBuffer(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        final int size = sizeFor(capacity);
+        mMask = size - 1;
+        mTimes = new long[size];
+        mValues = new int[size];
+    }
+
+    /**
+     * @return the smallest power of 2 that is bigger or equal than {@code capacity}
+     */
+    static int sizeFor(int capacity) {
+        return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Adds a change. Only call this from the producer thread
+     *
+     * @return false if the buffer was full and the change was dropped
+     */
+    public boolean offer(long timeNanos, int value) {
+        final long tail = mTail.get();
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead > mMask) {
+                mDropped.lazySet(mDropped.get() + 1);
+                return false;
+            }
+        }
+        final int index = (int) tail & mMask;
+        mTimes[index] = timeNanos;
+        mValues[index] = value;
+        //Makes the slot visible to the consumer
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Moves the pending changes, oldest first, to the arrays. Only call this from the consumer thread
+     *
+     * @param times  receives the time of every change
+     * @param values receives the value of every change
+     * @return the amount of changes copied, limited by the arrays length
+     */
+    public int drain(long[] times, int[] values) {
+        final long head = mHead.get();
+        final long available = mTail.get() - head;
+        final int count = (int) Math.min(available, Math.min(times.length, values.length));
+        for (int i = 0; i < count; i++) {
+            int index = (int) (head + i) & mMask;
+            times[i] = mTimes[index];
+            values[i] = mValues[index];
+        }
+        //Frees the slots for the producer
+        mHead.lazySet(head + count);
+        return count;
+    }
+
+    /**
+     * @return the amount of changes dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+/**
+ * State of the DiscreteSeekBar published by the UI thread for readers on any other thread, without locks.
+ * <p>
+ * It's a sequence lock: the writer makes the sequence odd while it's writing and even again when it's done,
+ * so readers just retry if the sequence was odd or changed while they were reading.
+ * Every field is volatile so reads can't be reordered around the sequence reads.
+ * </p>
+ * <pre>
+ * long sequence;
+ * do {
+ *     sequence = state.beginRead();
+ *     //read the fields
+ * } while (!state.endRead(sequence));
+ * </pre>
+ * <p>
+ * There must be only one writer, the UI thread.
+ * </p>
+ *
+ * @hide
+ */
+public class PublishedState {
+    private volatile long mSequence;
+    private volatile int mValue;
+    private volatile int mMin;
+    private volatile int mMax;
+    private volatile boolean mDragging;
+
+    /**
+     * Publishes the new state. Nothing happens if it didn't change
+     */
+    public void publish(int value, int min, int max, boolean dragging) {
+        if (value == mValue && min == mMin && max == mMax && dragging == mDragging) {
+            return;
+        }
+        final long sequence = mSequence;
+        mSequence = sequence + 1;
+        mValue = value;
+        mMin = min;
+        mMax = max;
+        mDragging = dragging;
+        mSequence = sequence + 2;
+    }
+
+    /**
+     * Waits until there's no write in progress
+     *
+     * @return the sequence to pass to {@link #endRead(long)}
+     */
+    public long beginRead() {
+        long sequence;
+        while (((sequence = mSequence) & 1) != 0) {
+            //The write is just a few fields, it'll be done right away
+        }
+        return sequence;
+    }
+
+    /**
+     * @return true if nothing was written since {@link #beginRead()}, so the fields read are consistent
+     */
+    public boolean endRead(long sequence) {
+        return mSequence == sequence;
+    }
+
+    public int getValue() {
+        return mValue;
+    }
+
+    public int getMin() {
+        return mMin;
+    }
+
+    public int getMax() {
+        return mMax;
+    }
+
+    public boolean isDragging() {
+        return mDragging;
+    }
+}
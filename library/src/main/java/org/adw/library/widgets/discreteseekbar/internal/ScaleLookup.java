@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import org.adw.library.widgets.discreteseekbar.ValueScale;
+
+/**
+ * Precomputed pixel&lt;-&gt;value tables for a {@link ValueScale}.
+ * <p>
+ * The tables are built when the MIN-MAX range or the available pixels change,
+ * so mapping a touch position to a value is just an array lookup
+ * and the scale is never called while dragging.
+ * </p>
+ * <p>
+ * Small ranges also get a value-&gt;pixel table. Bigger ones do a binary search on the pixel-&gt;value table,
+ * so the memory used is bounded by the width of the track.
+ * </p>
+ *
+ * @hide
+ */
+public class ScaleLookup {
+    //Ranges up to this amount of values get a value->pixel table
+    static final int MAX_VALUE_TABLE_SIZE = 4096;
+
+    private final ValueScale mScale;
+    private int mMin;
+    private int mMax;
+    private int mAvailable = -1;
+    //Value at every pixel, from 0 to mAvailable (both included)
+    private int[] mPixelToValue = new int[0];
+    //Pixel of every value from MIN to MAX, null on big ranges
+    private float[] mValueToPixel;
+
+    public ScaleLookup(ValueScale scale) {
+        mScale = scale;
+    }
+
+    public ValueScale getScale() {
+        return mScale;
+    }
+
+    /**
+     * Rebuilds the tables if needed
+     *
+     * @param min       the MIN value
+     * @param max       the MAX value
+     * @param available the amount of pixels of the track
+     * @return true if the tables were rebuilt
+     */
+    public boolean update(int min, int max, int available) {
+        available = Math.max(0, available);
+        if (min == mMin && max == mMax && available == mAvailable) {
+            return false;
+        }
+        mMin = min;
+        mMax = max;
+        mAvailable = available;
+        final ValueScale scale = mScale;
+        if (mPixelToValue.length != available + 1) {
+            mPixelToValue = new int[available + 1];
+        }
+        final int[] pixelToValue = mPixelToValue;
+        int previous = min;
+        for (int i = 0; i <= available; i++) {
+            float position = available == 0 ? 0 : (float) i / available;
+            int value = Math.round(scale.toValue(position, min, max));
+            //Clamp and force it to be monotonic, we can't trust float errors
+            value = Math.max(previous, Math.min(max, value));
+            pixelToValue[i] = value;
+            previous = value;
+        }
+        if (available > 0) {
+            //The ends must always be reachable
+            pixelToValue[0] = min;
+            pixelToValue[available] = max;
+        }
+
+        long size = (long) max - min + 1;
+        if (size <= MAX_VALUE_TABLE_SIZE) {
+            if (mValueToPixel == null || mValueToPixel.length != size) {
+                mValueToPixel = new float[(int) size];
+            }
+            final float[] valueToPixel = mValueToPixel;
+            for (int i = 0; i < size; i++) {
+                float position = max == min ? 0 : scale.toPosition(min + i, min, max);
+                valueToPixel[i] = Math.max(0, Math.min(1, position)) * available;
+            }
+        } else {
+            mValueToPixel = null;
+        }
+        return true;
+    }
+
+    /**
+     * @param pixel the distance from the start of the track
+     * @return the value at that pixel
+     */
+    public int valueAt(int pixel) {
+        if (mAvailable <= 0) {
+            return mMin;
+        }
+        return mPixelToValue[Math.max(0, Math.min(mAvailable, pixel))];
+    }
+
+    /**
+     * @param value the value, it can be between two integer values while animating
+     * @return the distance from the start of the track to the value
+     */
+    public float pixelOf(float value) {
+        if (mAvailable <= 0 || value <= mMin) {
+            return 0;
+        } else if (value >= mMax) {
+            return mAvailable;
+        }
+        final float[] valueToPixel = mValueToPixel;
+        if (valueToPixel != null) {
+            float offset = value - mMin;
+            int index = (int) offset;
+            float fraction = offset - index;
+            if (index + 1 >= valueToPixel.length) {
+                return valueToPixel[valueToPixel.length - 1];
+            }
+            return valueToPixel[index] + fraction * (valueToPixel[index + 1] - valueToPixel[index]);
+        }
+        //Binary search of the last pixel with a value <= the one we want
+        final int[] pixelToValue = mPixelToValue;
+        int low = 0;
+        int high = mAvailable;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pixelToValue[mid] <= value) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low >= mAvailable) {
+            return mAvailable;
+        }
+        int start = pixelToValue[low];
+        int end = pixelToValue[low + 1];
+        return end == start ? low : low + (value - start) / (end - start);
+    }
+
+    public int getMin() {
+        return mMin;
+    }
+
+    public int getMax() {
+        return mMax;
+    }
+}
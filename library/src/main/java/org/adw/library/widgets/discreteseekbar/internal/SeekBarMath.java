@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+/**
+ * Plain math used by the DiscreteSeekBar and its drawables.
+ * <p>
+ * This class must not depend on any Android API, so it can be benchmarked on a regular JVM.
+ * </p>
+ *
+ * @hide
+ */
+public class SeekBarMath {
+    //Indexes of the values computed by markerGeometry
+    public static final int MARKER_SIZE = 0;
+    public static final int MARKER_CORNER = 1;
+    public static final int MARKER_TRANSLATE_X = 2;
+    public static final int MARKER_TRANSLATE_Y = 3;
+    public static final int MARKER_GEOMETRY_SIZE = 4;
+
+    //Max amount of key presses to go from MIN to MAX
+    private static final int MAX_KEY_STEPS = 20;
+
+    private SeekBarMath() {
+    }
+
+    /**
+     * Linear mapping of a position along the track to a progress value
+     *
+     * @param position  distance from the start of the track, between 0 and available
+     * @param available the amount of pixels of the track
+     * @param mirrored  if the track is mirrored (RTL)
+     */
+    public static int progressAtPosition(int position, int available, int min, int max, boolean mirrored) {
+        float scale = (float) position / (float) available;
+        if (mirrored) {
+            scale = 1f - scale;
+        }
+        return Math.round((scale * (max - min)) + min);
+    }
+
+    /**
+     * Linear mapping of a progress value to the distance from the start of the track
+     */
+    public static int positionOfProgress(float value, int min, int max, int available) {
+        float scale = (value - min) / (float) (max - min);
+        return (int) (scale * available + 0.5f);
+    }
+
+    /**
+     * Adjusts the key increment so it doesn't take too many key presses to go through the whole range
+     *
+     * @param increment the current increment
+     * @param range     MAX-MIN
+     * @return the new increment
+     */
+    public static int keyProgressIncrement(int increment, int range) {
+        if ((increment == 0) || (range / increment > MAX_KEY_STEPS)) {
+            // It will take the user too long to change this via keys, change it
+            // to something more reasonable
+            return Math.max(1, Math.round((float) range / MAX_KEY_STEPS));
+        }
+        return increment;
+    }
+
+    /**
+     * Blends 2 ARGB colors
+     *
+     * @param factor amount of color1, from 0 to 1
+     */
+    public static int blendColors(int color1, int color2, float factor) {
+        final float inverseFactor = 1f - factor;
+        float a = ((color1 >>> 24) * factor) + ((color2 >>> 24) * inverseFactor);
+        float r = (((color1 >> 16) & 0xFF) * factor) + (((color2 >> 16) & 0xFF) * inverseFactor);
+        float g = (((color1 >> 8) & 0xFF) * factor) + (((color2 >> 8) & 0xFF) * inverseFactor);
+        float b = ((color1 & 0xFF) * factor) + ((color2 & 0xFF) * inverseFactor);
+        return ((int) a << 24) | ((int) r << 16) | ((int) g << 8) | (int) b;
+    }
+
+    /**
+     * Computes the shape of the marker for the current animation scale:
+     * a rounded square growing from the thumb size to the full bounds and moving up
+     * while its bottom corner becomes sharp.
+     *
+     * @param width          width of the marker bounds
+     * @param height         height of the marker bounds
+     * @param bottom         bottom of the marker bounds
+     * @param closedSize     size of the marker when closed (the thumb size)
+     * @param externalOffset extra offset to the thumb
+     * @param scale          the animation scale, from 0 (closed) to 1 (open)
+     * @param out            receives the size, the sharp corner radius and the translation,
+     *                       at the MARKER_* indexes. Must be at least MARKER_GEOMETRY_SIZE long
+     */
+    public static void markerGeometry(int width, int height, int bottom, float closedSize, float externalOffset,
+                                      float scale, float[] out) {
+        int totalSize = Math.min(width, height);
+        float currentSize = closedSize + (totalSize - closedSize) * scale;
+        float halfSize = currentSize / 2f;
+        float inverseScale = 1f - scale;
+        out[MARKER_SIZE] = currentSize;
+        out[MARKER_CORNER] = halfSize * inverseScale;
+        out[MARKER_TRANSLATE_X] = (width - currentSize) / 2;
+        out[MARKER_TRANSLATE_Y] = (bottom - currentSize - externalOffset) * inverseScale;
+    }
+}
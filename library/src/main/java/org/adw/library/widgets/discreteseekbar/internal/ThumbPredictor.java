@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+/**
+ * Extrapolates the touch position to the time the next frame will be shown,
+ * so the thumb doesn't visibly lag behind the finger.
+ * <p>
+ * Every prediction is checked against the real touch samples received later
+ * and the error is accumulated, so the prediction can be tuned.
+ * </p>
+ *
+ * @hide
+ */
+public class ThumbPredictor {
+    //Don't predict too far away, errors grow quickly
+    static final long MAX_LOOKAHEAD_MS = 48;
+
+    //The pending prediction, waiting for real samples around its target time
+    private boolean mPending;
+    private long mPredictedTime;
+    private float mPredictedPosition;
+    //Last real sample
+    private boolean mHasSample;
+    private long mLastTime;
+    private float mLastPosition;
+
+    private int mPredictionCount;
+    private double mErrorSum;
+    private float mMaxError;
+
+    /**
+     * Forgets the samples and the pending prediction, at the start of every drag
+     */
+    public void reset() {
+        mPending = false;
+        mHasSample = false;
+    }
+
+    /**
+     * Feeds a real touch sample. They must be fed in time order
+     */
+    public void addSample(long timeMillis, float position) {
+        if (mPending && timeMillis >= mPredictedTime) {
+            //Real position at the predicted time
+            float actual = position;
+            if (mHasSample && timeMillis > mLastTime && mPredictedTime > mLastTime) {
+                float fraction = (float) (mPredictedTime - mLastTime) / (timeMillis - mLastTime);
+                actual = mLastPosition + (position - mLastPosition) * fraction;
+            }
+            float error = Math.abs(mPredictedPosition - actual);
+            mPredictionCount++;
+            mErrorSum += error;
+            mMaxError = Math.max(mMaxError, error);
+            mPending = false;
+        }
+        mHasSample = true;
+        mLastTime = timeMillis;
+        mLastPosition = position;
+    }
+
+    /**
+     * Predicts the position at the target time
+     *
+     * @param position   the latest real position
+     * @param timeMillis the time of the latest real position
+     * @param velocity   the current velocity, in position units per second
+     * @param targetTime the time we want to predict the position for
+     * @return the predicted position
+     */
+    public float predict(float position, long timeMillis, float velocity, long targetTime) {
+        long lookahead = Math.max(0, Math.min(MAX_LOOKAHEAD_MS, targetTime - timeMillis));
+        float predicted = position + velocity * lookahead / 1000f;
+        mPending = lookahead > 0;
+        mPredictedTime = timeMillis + lookahead;
+        mPredictedPosition = predicted;
+        return predicted;
+    }
+
+    /**
+     * @return the amount of predictions checked against real samples
+     */
+    public int getPredictionCount() {
+        return mPredictionCount;
+    }
+
+    /**
+     * @return the mean absolute error of the checked predictions, in position units
+     */
+    public float getMeanError() {
+        return mPredictionCount == 0 ? 0 : (float) (mErrorSum / mPredictionCount);
+    }
+
+    /**
+     * @return the max absolute error of the checked predictions, in position units
+     */
+    public float getMaxError() {
+        return mMaxError;
+    }
+
+    public void resetMetrics() {
+        mPredictionCount = 0;
+        mErrorSum = 0;
+        mMaxError = 0;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Finds the widest label the indicator will have to show, so it can be measured just once.
+ * <p>
+ * Small ranges are just scanned. On big ranges, integer labels are analyzed by their digits:
+ * the candidates are both ends of the (transformed) range plus the numbers built with the widest digits
+ * that still fall inside it, so we find things like "-88" being wider than "100" without formatting every value.
+ * On big ranges the {@link Source#transform(int)} is expected to be monotonic.
+ * String transforms can be expensive, so they're only scanned on very small ranges and sampled on bigger ones.
+ * </p>
+ * <p>
+ * Results are cached per transformer, formatter, typeface, text size, MIN, MAX and Locale, so configuring
+ * the same thing again (like binding list items) doesn't cost anything.
+ * As with the labels cache, transformers must always return the same label for the same value.
+ * </p>
+ * <p>
+ * This class must only be used from the UI thread.
+ * </p>
+ *
+ * @hide
+ */
+public class WidestLabel {
+    /**
+     * The way labels are built, implemented by the DiscreteSeekBar
+     */
+    public interface Source {
+        int getMin();
+
+        int getMax();
+
+        /**
+         * @return the object that transforms the values, used as part of the cache key
+         */
+        Object getTransformer();
+
+        /**
+         * @return the format pattern, used as part of the cache key
+         */
+        String getFormatter();
+
+        boolean useStringTransform();
+
+        int transform(int value);
+
+        String transformToString(int value);
+
+        /**
+         * @param transformedValue a value already transformed
+         * @return the label
+         */
+        String format(int transformedValue);
+    }
+
+    //Ranges up to this amount of values are just scanned
+    static final int SCAN_LIMIT = 1024;
+    //Ranges up to this amount of values are just scanned with string transforms...
+    static final int STRING_SCAN_LIMIT = 64;
+    //...and bigger ones sampled at this amount of evenly spaced values, both ends included
+    static final int STRING_SAMPLES = 32;
+    //Maximum amount of candidates built from the digits of a range end
+    static final int MAX_DIGIT_CANDIDATES = 3;
+    //Cached results per transformer
+    private static final int CACHE_SIZE = 16;
+
+    //Transformers are weakly referenced so we don't leak them (or whatever they hold)
+    private static final WeakHashMap<Object, LinkedHashMap<Key, String>> sCache =
+            new WeakHashMap<Object, LinkedHashMap<Key, String>>();
+
+    private WidestLabel() {
+    }
+
+    /**
+     * @param source how labels are built
+     * @param paint  the Paint the labels will be drawn with
+     * @return the widest label
+     */
+    public static String find(Source source, Paint paint) {
+        final Object transformer = source.getTransformer();
+        Key key = new Key(source.getFormatter(), paint.getTypeface(), paint.getTextSize(),
+                source.getMin(), source.getMax(), Locale.getDefault());
+        LinkedHashMap<Key, String> results = sCache.get(transformer);
+        if (results == null) {
+            results = new LinkedHashMap<Key, String>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+            sCache.put(transformer, results);
+        }
+        String widest = results.get(key);
+        if (widest == null) {
+            widest = source.useStringTransform() ? findStringLabel(source, paint) : findIntegerLabel(source, paint);
+            results.put(key, widest);
+        }
+        return widest;
+    }
+
+    private static String findStringLabel(Source source, Paint paint) {
+        final int min = source.getMin();
+        final int max = source.getMax();
+        final long range = (long) max - min;
+        Widest widest = new Widest(paint);
+        if (range < STRING_SCAN_LIMIT) {
+            for (int i = min; i <= max; i++) {
+                widest.offer(source.transformToString(i));
+            }
+        } else {
+            for (int i = 0; i < STRING_SAMPLES; i++) {
+                widest.offer(source.transformToString((int) (min + range * i / (STRING_SAMPLES - 1))));
+            }
+        }
+        return widest.mLabel;
+    }
+
+    private static String findIntegerLabel(Source source, Paint paint) {
+        final int min = source.getMin();
+        final int max = source.getMax();
+        int low;
+        int high;
+        if ((long) max - min < SCAN_LIMIT) {
+            //Transforming is cheap, we get the real transformed range
+            low = Integer.MAX_VALUE;
+            high = Integer.MIN_VALUE;
+            for (int i = min; i <= max; i++) {
+                int value = source.transform(i);
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+        } else {
+            int first = source.transform(min);
+            int last = source.transform(max);
+            low = Math.min(first, last);
+            high = Math.max(first, last);
+        }
+
+        Widest widest = new Widest(paint);
+        widest.offer(source.format(low));
+        widest.offer(source.format(high));
+
+        //Digits sorted from the widest to the narrowest
+        int[] digits = sortDigitsByWidth(source, paint);
+        long[] candidates = new long[MAX_DIGIT_CANDIDATES];
+        if (high > 0) {
+            int count = digitCandidates(digits, high, 1, low, high, candidates);
+            offer(source, widest, candidates, count);
+        }
+        if (low < 0) {
+            int count = digitCandidates(digits, -(long) low, -1, low, high, candidates);
+            offer(source, widest, candidates, count);
+        }
+        return widest.mLabel;
+    }
+
+    /**
+     * Finds the widest looking numbers with as many digits as the bound (or one less) that are inside the range
+     *
+     * @param digits     the digits sorted from the widest to the narrowest
+     * @param magnitude  the absolute value of the range end
+     * @param sign       the sign of the range end
+     * @param candidates receives the candidates, at least {@link #MAX_DIGIT_CANDIDATES} long
+     * @return the amount of candidates
+     */
+    static int digitCandidates(int[] digits, long magnitude, int sign, int low, int high, long[] candidates) {
+        final int length = String.valueOf(magnitude).length();
+        final int widestDigit = digits[0];
+        final int widestNonZero = digits[0] != 0 ? digits[0] : digits[1];
+        final int leading = (int) (magnitude / pow10(length - 1));
+        int count = 0;
+        //Same leading digit as the bound
+        count = add(candidates, count, sign * fill(leading, widestDigit, length), low, high);
+        //Widest leading digit smaller than the bound's one
+        for (int digit : digits) {
+            if (digit > 0 && digit < leading) {
+                count = add(candidates, count, sign * fill(digit, widestDigit, length), low, high);
+                break;
+            }
+        }
+        if (length > 1) {
+            //One digit less
+            count = add(candidates, count, sign * fill(widestNonZero, widestDigit, length - 1), low, high);
+        }
+        return count;
+    }
+
+    private static int add(long[] candidates, int count, long value, int low, int high) {
+        if (value >= low && value <= high) {
+            candidates[count++] = value;
+        }
+        return count;
+    }
+
+    private static void offer(Source source, Widest widest, long[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            widest.offer(source.format((int) values[i]));
+        }
+    }
+
+    /**
+     * @return a number with {@code count} digits, starting with {@code leading} and then just {@code digit}
+     */
+    private static long fill(int leading, int digit, int count) {
+        long value = leading;
+        for (int i = 1; i < count; i++) {
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private static int[] sortDigitsByWidth(Source source, Paint paint) {
+        int[] digits = new int[10];
+        float[] widths = new float[10];
+        for (int i = 0; i < 10; i++) {
+            digits[i] = i;
+            //Formatted so the digits get "translated" to the Locale
+            widths[i] = paint.measureText(source.format(i));
+        }
+        //Insertion sort, widest first
+        for (int i = 1; i < 10; i++) {
+            int digit = digits[i];
+            int j = i - 1;
+            while (j >= 0 && widths[digits[j]] < widths[digit]) {
+                digits[j + 1] = digits[j];
+                j--;
+            }
+            digits[j + 1] = digit;
+        }
+        return digits;
+    }
+
+    private static class Widest {
+        private final Paint mPaint;
+        String mLabel = "";
+        float mWidth = -1;
+
+        Widest(Paint paint) {
+            mPaint = paint;
+        }
+
+        void offer(String label) {
+            if (label == null) {
+                return;
+            }
+            float width = mPaint.measureText(label);
+            if (width > mWidth) {
+                mWidth = width;
+                mLabel = label;
+            }
+        }
+    }
+
+    private static class Key {
+        final String mFormatter;
+        final Typeface mTypeface;
+        final float mTextSize;
+        final int mMin;
+        final int mMax;
+        final Locale mLocale;
+
+        Key(String formatter, Typeface typeface, float textSize, int min, int max, Locale locale) {
+            mFormatter = formatter;
+            mTypeface = typeface;
+            mTextSize = textSize;
+            mMin = min;
+            mMax = max;
+            mLocale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mMin == key.mMin && mMax == key.mMax && mTextSize == key.mTextSize
+                    && equal(mFormatter, key.mFormatter) && equal(mTypeface, key.mTypeface)
+                    && mLocale.equals(key.mLocale);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mFormatter != null ? mFormatter.hashCode() : 0;
+            result = 31 * result + (mTypeface != null ? mTypeface.hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(mTextSize);
+            result = 31 * result + mMin;
+            result = 31 * result + mMax;
+            result = 31 * result + mLocale.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Single animation clock shared by all the library drawables.
+ * <p>
+ * Instead of every drawable scheduling its own frames with a hardcoded frame duration,
+ * they subscribe here and receive a callback once per frame with the frame time.
+ * On API>=16 frames come from the {@link android.view.Choreographer} so they follow the
+ * real display refresh rate. On older APIs we fall back to posting a frame every 1000/60 ms.
+ * </p>
+ * <p>
+ * The instance can be replaced with {@link #setInstance(AnimationClock)}
+ * (for example with a {@link ManualAnimationClock}) to step animations deterministically.
+ * </p>
+ * <p>
+ * This class must only be used from the UI thread, except {@link FrameRequest#request()}.
+ * </p>
+ *
+ * @hide
+ */
+public abstract class AnimationClock {
+    public interface FrameCallback {
+        /**
+         * Called once per frame while subscribed
+         *
+         * @param frameTimeMillis the frame time, in the {@link android.os.SystemClock#uptimeMillis()} time base
+         */
+        public void onAnimationFrame(long frameTimeMillis);
+    }
+
+    /**
+     * Runs a {@link FrameCallback} once, on the next frame.
+     * Created with {@link #createFrameRequest(FrameCallback)}.
+     */
+    public interface FrameRequest {
+        /**
+         * Asks for the callback to run on the next frame. Unlike {@link #addFrameCallback(FrameCallback)}
+         * this can be called from any thread. Requesting again before the frame runs the callback twice
+         */
+        public void request();
+
+        /**
+         * Cancels the pending request, if any. Only call this from the UI thread
+         */
+        public void cancel();
+    }
+
+    private static AnimationClock sInstance;
+
+    private final ArrayList<FrameCallback> mCallbacks = new ArrayList<FrameCallback>();
+    //Copy of the callbacks to dispatch frames while they subscribe/unsubscribe
+    private FrameCallback[] mDispatching = new FrameCallback[4];
+    private boolean mFrameScheduled;
+    //One-shot callbacks waiting for their delay, and the time each one is due
+    private final ArrayList<FrameCallback> mDelayedCallbacks = new ArrayList<FrameCallback>();
+    private long[] mDelayedTimes = new long[4];
+    private FrameCallback[] mDelayedDispatching = new FrameCallback[4];
+    private boolean mDelayedFrameScheduled;
+    private long mDelayedFrameTime;
+
+    AnimationClock() {
+
+    }
+
+    public static AnimationClock getInstance() {
+        if (sInstance == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                sInstance = new AnimationClockV16();
+            } else {
+                sInstance = new AnimationClockBase();
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the shared clock. Passing null restores the default one.
+     */
+    @VisibleForTesting
+    public static void setInstance(AnimationClock clock) {
+        sInstance = clock;
+    }
+
+    /**
+     * @return the current time, in the same time base as the frame times
+     */
+    public abstract long now();
+
+    /**
+     * Subclasses must call {@link #dispatchFrame(long)} once, on the next frame
+     */
+    abstract void postFrame();
+
+    /**
+     * Subclasses must call {@link #dispatchDelayedFrame(long)} once, on the first frame after the delay.
+     * It replaces any delayed frame posted before
+     */
+    abstract void postDelayedFrame(long delayMillis);
+
+    public void addFrameCallback(FrameCallback callback) {
+        if (!mCallbacks.contains(callback)) {
+            mCallbacks.add(callback);
+        }
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            postFrame();
+        }
+    }
+
+    /**
+     * Calls {@code callback} once, on the first frame after {@code delayMillis}.
+     * Nothing runs in between, so this is much cheaper than checking the time on every frame.
+     * Posting the same callback again replaces the previous delay, and
+     * {@link #removeFrameCallback(FrameCallback)} cancels it.
+     */
+    public void postFrameCallbackDelayed(FrameCallback callback, long delayMillis) {
+        removeDelayedFrameCallback(callback);
+        final long time = now() + delayMillis;
+        final int count = mDelayedCallbacks.size();
+        if (mDelayedTimes.length == count) {
+            mDelayedTimes = Arrays.copyOf(mDelayedTimes, count * 2);
+        }
+        mDelayedCallbacks.add(callback);
+        mDelayedTimes[count] = time;
+        scheduleDelayedFrame(time);
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        //If there are no callbacks left, the next frame just won't schedule another one
+        mCallbacks.remove(callback);
+        //Same for the delayed ones
+        removeDelayedFrameCallback(callback);
+    }
+
+    private void removeDelayedFrameCallback(FrameCallback callback) {
+        final int index = mDelayedCallbacks.indexOf(callback);
+        if (index >= 0) {
+            removeDelayedAt(index);
+        }
+    }
+
+    private void removeDelayedAt(int index) {
+        mDelayedCallbacks.remove(index);
+        System.arraycopy(mDelayedTimes, index + 1, mDelayedTimes, index, mDelayedCallbacks.size() - index);
+    }
+
+    private void scheduleDelayedFrame(long time) {
+        if (!mDelayedFrameScheduled || time < mDelayedFrameTime) {
+            mDelayedFrameScheduled = true;
+            mDelayedFrameTime = time;
+            postDelayedFrame(Math.max(0, time - now()));
+        }
+    }
+
+    /**
+     * Creates a {@link FrameRequest} to run {@code callback} on the next frame, requested from any thread.
+     * Call this from the UI thread.
+     */
+    public FrameRequest createFrameRequest(FrameCallback callback) {
+        return new HandlerFrameRequest(callback);
+    }
+
+    void dispatchFrame(long frameTimeMillis) {
+        mFrameScheduled = false;
+        final int count = mCallbacks.size();
+        if (mDispatching.length < count) {
+            mDispatching = new FrameCallback[count];
+        }
+        final FrameCallback[] dispatching = mCallbacks.toArray(mDispatching);
+        for (int i = 0; i < count; i++) {
+            FrameCallback callback = dispatching[i];
+            dispatching[i] = null;
+            //It may have been removed by a previous callback
+            if (mCallbacks.contains(callback)) {
+                callback.onAnimationFrame(frameTimeMillis);
+            }
+        }
+        if (!mCallbacks.isEmpty() && !mFrameScheduled) {
+            mFrameScheduled = true;
+            postFrame();
+        }
+    }
+
+    void dispatchDelayedFrame(long frameTimeMillis) {
+        mDelayedFrameScheduled = false;
+        //Frame times can be a bit behind the time the frame is actually running
+        final long time = Math.max(frameTimeMillis, now());
+        final int count = mDelayedCallbacks.size();
+        if (mDelayedDispatching.length < count) {
+            mDelayedDispatching = new FrameCallback[count];
+        }
+        final FrameCallback[] dispatching = mDelayedDispatching;
+        int due = 0;
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < mDelayedCallbacks.size(); ) {
+            if (mDelayedTimes[i] <= time) {
+                dispatching[due++] = mDelayedCallbacks.get(i);
+                removeDelayedAt(i);
+            } else {
+                next = Math.min(next, mDelayedTimes[i]);
+                i++;
+            }
+        }
+        if (next != Long.MAX_VALUE) {
+            scheduleDelayedFrame(next);
+        }
+        for (int i = 0; i < due; i++) {
+            FrameCallback callback = dispatching[i];
+            dispatching[i] = null;
+            callback.onAnimationFrame(frameTimeMillis);
+        }
+    }
+
+    /**
+     * @return true if there are delayed callbacks waiting
+     */
+    boolean hasDelayedCallbacks() {
+        return !mDelayedCallbacks.isEmpty();
+    }
+
+    /**
+     * Requests from the UI thread subscribe right away, the others hop to the UI thread first
+     */
+    private class HandlerFrameRequest implements FrameRequest, FrameCallback, Runnable {
+        private final FrameCallback mCallback;
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        HandlerFrameRequest(FrameCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void request() {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                run();
+            } else {
+                mHandler.post(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            mHandler.removeCallbacks(this);
+            removeFrameCallback(this);
+        }
+
+        @Override
+        public void run() {
+            addFrameCallback(this);
+        }
+
+        @Override
+        public void onAnimationFrame(long frameTimeMillis) {
+            removeFrameCallback(this);
+            mCallback.onAnimationFrame(frameTimeMillis);
+        }
+    }
+
+    private static class AnimationClockBase extends AnimationClock {
+        private static final long FRAME_DURATION = 1000 / 60;
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final Runnable mFrame = new Runnable() {
+            @Override
+            public void run() {
+                dispatchFrame(SystemClock.uptimeMillis());
+            }
+        };
+        private final Runnable mDelayedFrame = new Runnable() {
+            @Override
+            public void run() {
+                dispatchDelayedFrame(SystemClock.uptimeMillis());
+            }
+        };
+
+        @Override
+        public long now() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        void postFrame() {
+            mHandler.postAtTime(mFrame, SystemClock.uptimeMillis() + FRAME_DURATION);
+        }
+
+        @Override
+        void postDelayedFrame(long delayMillis) {
+            mHandler.removeCallbacks(mDelayedFrame);
+            mHandler.postAtTime(mDelayedFrame, SystemClock.uptimeMillis() + delayMillis);
+        }
+    }
+}
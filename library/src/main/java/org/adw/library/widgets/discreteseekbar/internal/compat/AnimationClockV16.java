@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * {@link org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock} driven by
+ * the {@link android.view.Choreographer}, so frames are synced with the display vsync
+ *
+ * @hide
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class AnimationClockV16 extends AnimationClock {
+    private static final long NANOS_PER_MS = 1000000;
+    private final Choreographer mChoreographer;
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            //Choreographer frame times use the same clock as uptimeMillis
+            dispatchFrame(frameTimeNanos / NANOS_PER_MS);
+        }
+    };
+    private final Choreographer.FrameCallback mDelayedFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchDelayedFrame(frameTimeNanos / NANOS_PER_MS);
+        }
+    };
+
+    public AnimationClockV16() {
+        super();
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    void postFrame() {
+        mChoreographer.postFrameCallback(mFrameCallback);
+    }
+
+    @Override
+    void postDelayedFrame(long delayMillis) {
+        mChoreographer.removeFrameCallback(mDelayedFrameCallback);
+        mChoreographer.postFrameCallbackDelayed(mDelayedFrameCallback, delayMillis);
+    }
+
+    @Override
+    public FrameRequest createFrameRequest(final FrameCallback callback) {
+        //The Choreographer accepts callbacks from any thread, so there's no need to hop to the UI thread
+        return new FrameRequest() {
+            private final Choreographer.FrameCallback mFrame = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    callback.onAnimationFrame(frameTimeNanos / NANOS_PER_MS);
+                }
+            };
+
+            @Override
+            public void request() {
+                mChoreographer.postFrameCallback(mFrame);
+            }
+
+            @Override
+            public void cancel() {
+                mChoreographer.removeFrameCallback(mFrame);
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+/**
+ * {@link org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock} that only
+ * produces frames when told to.
+ * <p>
+ * Install it with {@link AnimationClock#setInstance(AnimationClock)} to step the drawable
+ * animations frame by frame, without depending on the real time or a display.
+ * </p>
+ *
+ * @hide
+ */
+public class ManualAnimationClock extends AnimationClock {
+    private long mNow;
+    private boolean mFramePending;
+    private boolean mDelayedFramePending;
+    private long mDelayedFrameTime;
+
+    public ManualAnimationClock(long startTime) {
+        super();
+        mNow = startTime;
+    }
+
+    @Override
+    public long now() {
+        return mNow;
+    }
+
+    @Override
+    void postFrame() {
+        mFramePending = true;
+    }
+
+    @Override
+    void postDelayedFrame(long delayMillis) {
+        mDelayedFramePending = true;
+        mDelayedFrameTime = mNow + delayMillis;
+    }
+
+    /**
+     * Moves the time forward and produces a frame if anybody asked for it
+     *
+     * @param millis the amount of time to move forward
+     * @return true if a frame was produced or delayed callbacks are still waiting for theirs
+     */
+    public boolean advance(long millis) {
+        mNow += millis;
+        boolean produced = false;
+        if (mDelayedFramePending && mNow >= mDelayedFrameTime) {
+            mDelayedFramePending = false;
+            dispatchDelayedFrame(mNow);
+            produced = true;
+        }
+        if (mFramePending) {
+            mFramePending = false;
+            dispatchFrame(mNow);
+            produced = true;
+        }
+        return produced || hasDelayedCallbacks();
+    }
+}
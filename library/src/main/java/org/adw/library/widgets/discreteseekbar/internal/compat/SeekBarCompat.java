@@ -23,6 +23,7 @@ import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.v4.graphics.drawable.DrawableCompat;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.ViewParent;
 import android.widget.TextView;
 
@@ -50,6 +51,18 @@ public class SeekBarCompat {
         }
     }
 
+    /**
+     * Asks the View to query its Outline provider again on API>=21.
+     * Does nothing on API<21
+     *
+     * @param view
+     */
+    public static void invalidateOutline(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            SeekBarCompatDontCrash.invalidateOutline(view);
+        }
+    }
+
     /**
      * Our DiscreteSeekBar implementation uses a circular drawable on API < 21
      * because we don't set it as Background, but draw it ourselves
@@ -134,6 +147,25 @@ public class SeekBarCompat {
         return false;
     }
 
+    /**
+     * @return true if Views can be added to a {@link android.view.ViewGroupOverlay} (API>=18)
+     */
+    public static boolean isOverlaySupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public static void addToOverlay(ViewGroup host, View view) {
+        if (isOverlaySupported()) {
+            SeekBarCompatDontCrash.addToOverlay(host, view);
+        }
+    }
+
+    public static void removeFromOverlay(ViewGroup host, View view) {
+        if (isOverlaySupported()) {
+            SeekBarCompatDontCrash.removeFromOverlay(host, view);
+        }
+    }
+
     public static boolean isHardwareAccelerated(View view) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
             return SeekBarCompatDontCrash.isHardwareAccelerated(view);
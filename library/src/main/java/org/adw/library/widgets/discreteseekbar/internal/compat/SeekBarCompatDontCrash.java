@@ -46,6 +46,10 @@ class SeekBarCompatDontCrash {
         });
     }
 
+    public static void invalidateOutline(View view) {
+        view.invalidateOutline();
+    }
+
     public static Drawable getRipple(ColorStateList colorStateList) {
         return new RippleDrawable(colorStateList, null, null);
     }
@@ -68,6 +72,14 @@ class SeekBarCompatDontCrash {
         return false;
     }
 
+    public static void addToOverlay(ViewGroup host, View view) {
+        host.getOverlay().add(view);
+    }
+
+    public static void removeFromOverlay(ViewGroup host, View view) {
+        host.getOverlay().remove(view);
+    }
+
     public static boolean isHardwareAccelerated(View view) {
         return view.isHardwareAccelerated();
     }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import android.os.Build;
+
+/**
+ * Wrapper compatibility class to add sections to the system traces.
+ * <p>
+ * Tracing is disabled by default and can be switched at runtime with {@link #setEnabled(boolean)}.
+ * While disabled every method just checks a flag. On API&lt;18 it never does anything.
+ * </p>
+ * <p>
+ * Sync sections must be nested and ended on the same thread (the UI thread).
+ * We keep track of the ones we started, so switching tracing off in the middle of a section
+ * still ends it properly.
+ * </p>
+ * <p>
+ * Async sections can span several frames (like animations or drags). They're identified
+ * by their name and a cookie, and two sections with the same name and cookie can't overlap.
+ * </p>
+ *
+ * @hide
+ */
+public class TraceCompat {
+    private static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    private static boolean sEnabled;
+    //Amount of sync sections we started and didn't end yet
+    private static int sDepth;
+
+    private TraceCompat() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled && SUPPORTED;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void beginSection(String sectionName) {
+        if (sEnabled) {
+            TraceCompatV18.beginSection(sectionName);
+            sDepth++;
+        }
+    }
+
+    public static void endSection() {
+        if (sDepth > 0) {
+            sDepth--;
+            TraceCompatV18.endSection();
+        }
+    }
+
+    /**
+     * Begins an async section
+     *
+     * @return true if it was started, so you know if you need to end it
+     */
+    public static boolean beginAsyncSection(String sectionName, int cookie) {
+        if (sEnabled) {
+            TraceCompatV18.beginAsyncSection(sectionName, cookie);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends an async section started with {@link #beginAsyncSection(String, int)}.
+     * This works even if tracing was disabled after starting it.
+     */
+    public static void endAsyncSection(String sectionName, int cookie) {
+        if (SUPPORTED) {
+            TraceCompatV18.endAsyncSection(sectionName, cookie);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Wrapper compatibility class to call {@link android.os.Trace} on API&gt;=18.
+ * <p>
+ * Async sections are only public since API 29, so we look them up by reflection:
+ * {@code Trace.beginAsyncSection} when available or the older {@code Trace.asyncTraceBegin}
+ * with the app trace tag. If neither can be found async sections are just ignored.
+ * </p>
+ *
+ * @hide
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+class TraceCompatV18 {
+    //Trace.TRACE_TAG_APP
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    private static boolean sAsyncLookupDone;
+    private static Method sAsyncBegin;
+    private static Method sAsyncEnd;
+    //The old methods need the trace tag as first argument
+    private static boolean sAsyncNeedsTag;
+
+    static void beginSection(String sectionName) {
+        Trace.beginSection(sectionName);
+    }
+
+    static void endSection() {
+        Trace.endSection();
+    }
+
+    static void beginAsyncSection(String sectionName, int cookie) {
+        invokeAsync(true, sectionName, cookie);
+    }
+
+    static void endAsyncSection(String sectionName, int cookie) {
+        invokeAsync(false, sectionName, cookie);
+    }
+
+    private static void invokeAsync(boolean begin, String sectionName, int cookie) {
+        if (!sAsyncLookupDone) {
+            lookupAsyncMethods();
+        }
+        Method method = begin ? sAsyncBegin : sAsyncEnd;
+        if (method == null) {
+            return;
+        }
+        try {
+            if (sAsyncNeedsTag) {
+                method.invoke(null, TRACE_TAG_APP, sectionName, cookie);
+            } else {
+                method.invoke(null, sectionName, cookie);
+            }
+        } catch (Exception e) {
+            //Not worth crashing for a trace, just stop trying
+            sAsyncBegin = null;
+            sAsyncEnd = null;
+        }
+    }
+
+    private static void lookupAsyncMethods() {
+        sAsyncLookupDone = true;
+        try {
+            sAsyncBegin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+            sAsyncEnd = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            sAsyncNeedsTag = false;
+            return;
+        } catch (NoSuchMethodException e) {
+            //Older API, try the hidden ones
+        }
+        try {
+            sAsyncBegin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+            sAsyncEnd = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+            sAsyncNeedsTag = true;
+        } catch (Exception e) {
+            sAsyncBegin = null;
+            sAsyncEnd = null;
+        }
+    }
+}
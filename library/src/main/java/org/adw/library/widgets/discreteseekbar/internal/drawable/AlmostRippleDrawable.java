@@ -22,13 +22,13 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Animatable;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.Interpolator;
 
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+
 public class AlmostRippleDrawable extends StateDrawable implements Animatable {
-    private static final long FRAME_DURATION = 1000 / 60;
     private static final int ANIMATION_DURATION = 250;
 
     private static final float INACTIVE_SCALE = 0f;
@@ -124,7 +124,7 @@ public class AlmostRippleDrawable extends StateDrawable implements Animatable {
         }
 
         if (disabled) {
-            unscheduleSelf(mUpdater);
+            AnimationClock.getInstance().removeFrameCallback(mUpdater);
             mRippleColor = mDisabledColor;
             mRippleBgColor = 0;
             mCurrentScale = ACTIVE_SCALE / 2;
@@ -152,28 +152,30 @@ public class AlmostRippleDrawable extends StateDrawable implements Animatable {
     }
 
     public void animateToPressed() {
-        unscheduleSelf(mUpdater);
+        AnimationClock.getInstance().removeFrameCallback(mUpdater);
         if (mCurrentScale < ACTIVE_SCALE) {
             mReverse = false;
             mRunning = true;
             mAnimationInitialValue = mCurrentScale;
             float durationFactor = 1f - ((mAnimationInitialValue - INACTIVE_SCALE) / (ACTIVE_SCALE - INACTIVE_SCALE));
             mDuration = (int) (ANIMATION_DURATION * durationFactor);
-            mStartTime = SystemClock.uptimeMillis();
-            scheduleSelf(mUpdater, mStartTime + FRAME_DURATION);
+            AnimationClock clock = AnimationClock.getInstance();
+            mStartTime = clock.now();
+            clock.addFrameCallback(mUpdater);
         }
     }
 
     public void animateToNormal() {
-        unscheduleSelf(mUpdater);
+        AnimationClock.getInstance().removeFrameCallback(mUpdater);
         if (mCurrentScale > INACTIVE_SCALE) {
             mReverse = true;
             mRunning = true;
             mAnimationInitialValue = mCurrentScale;
             float durationFactor = 1f - ((mAnimationInitialValue - ACTIVE_SCALE) / (INACTIVE_SCALE - ACTIVE_SCALE));
             mDuration = (int) (ANIMATION_DURATION * durationFactor);
-            mStartTime = SystemClock.uptimeMillis();
-            scheduleSelf(mUpdater, mStartTime + FRAME_DURATION);
+            AnimationClock clock = AnimationClock.getInstance();
+            mStartTime = clock.now();
+            clock.addFrameCallback(mUpdater);
         }
     }
 
@@ -184,19 +186,18 @@ public class AlmostRippleDrawable extends StateDrawable implements Animatable {
         invalidateSelf();
     }
 
-    private final Runnable mUpdater = new Runnable() {
+    private final AnimationClock.FrameCallback mUpdater = new AnimationClock.FrameCallback() {
 
         @Override
-        public void run() {
+        public void onAnimationFrame(long frameTimeMillis) {
 
-            long currentTime = SystemClock.uptimeMillis();
-            long diff = currentTime - mStartTime;
+            //The frame time can be a bit older than our start time
+            long diff = Math.max(0, frameTimeMillis - mStartTime);
             if (diff < mDuration) {
                 float interpolation = mInterpolator.getInterpolation((float) diff / (float) mDuration);
-                scheduleSelf(mUpdater, currentTime + FRAME_DURATION);
                 updateAnimation(interpolation);
             } else {
-                unscheduleSelf(mUpdater);
+                AnimationClock.getInstance().removeFrameCallback(mUpdater);
                 mRunning = false;
                 updateAnimation(1f);
             }
@@ -18,18 +18,22 @@ package org.adw.library.widgets.discreteseekbar.internal.drawable;
 
 import android.content.res.ColorStateList;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Animatable;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.Interpolator;
 
+import org.adw.library.widgets.discreteseekbar.internal.SeekBarMath;
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.compat.TraceCompat;
+
+import java.util.Arrays;
+
 /**
  * Implementation of {@link StateDrawable} to draw a morphing marker symbol.
  * <p>
@@ -40,18 +44,29 @@ import android.view.animation.Interpolator;
  * <li>Animates color change from the normal state color to the pressed state color</li>
  * <li>Uses a {@link android.graphics.Path} to also serve as Outline for API>=21</li>
  * </ul>
+ * <p>
+ * The morph is quantized into a few keyframe Paths, computed once per bounds,
+ * so running the animation doesn't need to allocate or rebuild any Path.
+ * </p>
  *
  * @hide
  */
 public class MarkerDrawable extends StateDrawable implements Animatable {
-    private static final long FRAME_DURATION = 1000 / 60;
     private static final int ANIMATION_DURATION = 250;
+    //Amount of different shapes between the circle and the marker
+    private static final int KEYFRAME_COUNT = 32;
+    //Trace section names
+    private static final String TRACE_COMPUTE_PATH = "MarkerDrawable#computePath";
+    private static final String TRACE_OPEN = "MarkerDrawable:open";
+    private static final String TRACE_CLOSE = "MarkerDrawable:close";
 
     private float mCurrentScale = 0f;
     private Interpolator mInterpolator;
     private long mStartTime;
     private boolean mReverse = false;
     private boolean mRunning = false;
+    //Name of the async trace section of the running animation, null if not traced
+    private String mTracedAnimation;
     private int mDuration = ANIMATION_DURATION;
     //size of the actual thumb drawable to use as circle state size
     private float mClosedStateSize;
@@ -64,10 +79,17 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
     private int mStartColor;//Color when the Marker is OPEN
     private int mEndColor;//Color when the arker is CLOSED
 
+    //The current keyframe Path
     Path mPath = new Path();
     RectF mRect = new RectF();
     Matrix mMatrix = new Matrix();
+    private final float[] mCorners = new float[8];
+    private final float[] mGeometry = new float[SeekBarMath.MARKER_GEOMETRY_SIZE];
+    private Path[] mKeyframes;
+    private final boolean[] mKeyframeReady = new boolean[KEYFRAME_COUNT];
+    private int mCurrentKeyframe = -1;
     private MarkerAnimationListener mMarkerListener;
+    private OnShapeChangeListener mShapeListener;
 
     public MarkerDrawable(@NonNull ColorStateList tintList, int closedSize) {
         super(tintList);
@@ -78,8 +100,19 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
 
     }
 
+    /**
+     * Sets the size of the circle shape (the thumb size)
+     */
+    public void setClosedStateSize(int closedSize) {
+        if (closedSize != mClosedStateSize) {
+            mClosedStateSize = closedSize;
+            invalidateKeyframes();
+        }
+    }
+
     public void setExternalOffset(int offset) {
         mExternalOffset = offset;
+        invalidateKeyframes();
     }
 
     /**
@@ -110,54 +143,91 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
     @Override
     protected void onBoundsChange(Rect bounds) {
         super.onBoundsChange(bounds);
-        computePath(bounds);
+        invalidateKeyframes();
     }
 
-    private void computePath(Rect bounds) {
-        final float currentScale = mCurrentScale;
-        final Path path = mPath;
-        final RectF rect = mRect;
-        final Matrix matrix = mMatrix;
+    private void invalidateKeyframes() {
+        Arrays.fill(mKeyframeReady, false);
+        mCurrentKeyframe = -1;
+        updateKeyframe(getBounds());
+    }
 
-        path.reset();
-        int totalSize = Math.min(bounds.width(), bounds.height());
+    /**
+     * Picks the keyframe for the current scale, computing it if needed
+     */
+    private void updateKeyframe(Rect bounds) {
+        int keyframe = Math.round(mCurrentScale * (KEYFRAME_COUNT - 1));
+        if (keyframe == mCurrentKeyframe || bounds.isEmpty()) {
+            return;
+        }
+        if (mKeyframes == null) {
+            mKeyframes = new Path[KEYFRAME_COUNT];
+            for (int i = 0; i < KEYFRAME_COUNT; i++) {
+                mKeyframes[i] = new Path();
+            }
+        }
+        Path path = mKeyframes[keyframe];
+        if (!mKeyframeReady[keyframe]) {
+            computePath(bounds, (float) keyframe / (KEYFRAME_COUNT - 1), path);
+            mKeyframeReady[keyframe] = true;
+        }
+        mCurrentKeyframe = keyframe;
+        mPath = path;
+        if (mShapeListener != null) {
+            mShapeListener.onShapeChanged(this);
+        }
+    }
 
-        float initial = mClosedStateSize;
-        float destination = totalSize;
-        float currentSize = initial + (destination - initial) * currentScale;
+    private void computePath(Rect bounds, float currentScale, Path path) {
+        TraceCompat.beginSection(TRACE_COMPUTE_PATH);
+        try {
+            final RectF rect = mRect;
+            final Matrix matrix = mMatrix;
 
-        float halfSize = currentSize / 2f;
-        float inverseScale = 1f - currentScale;
-        float cornerSize = halfSize * inverseScale;
-        float[] corners = new float[]{halfSize, halfSize, halfSize, halfSize, halfSize, halfSize, cornerSize, cornerSize};
-        rect.set(bounds.left, bounds.top, bounds.left + currentSize, bounds.top + currentSize);
-        path.addRoundRect(rect, corners, Path.Direction.CCW);
-        matrix.reset();
-        matrix.postRotate(-45, bounds.left + halfSize, bounds.top + halfSize);
-        matrix.postTranslate((bounds.width() - currentSize) / 2, 0);
-        float hDiff = (bounds.bottom - currentSize - mExternalOffset) * inverseScale;
-        matrix.postTranslate(0, hDiff);
-        path.transform(matrix);
+            path.rewind();
+            final float[] geometry = mGeometry;
+            SeekBarMath.markerGeometry(bounds.width(), bounds.height(), bounds.bottom, mClosedStateSize, mExternalOffset,
+                    currentScale, geometry);
+            float currentSize = geometry[SeekBarMath.MARKER_SIZE];
+            float halfSize = currentSize / 2f;
+            float cornerSize = geometry[SeekBarMath.MARKER_CORNER];
+            final float[] corners = mCorners;
+            Arrays.fill(corners, 0, 6, halfSize);
+            corners[6] = cornerSize;
+            corners[7] = cornerSize;
+            rect.set(bounds.left, bounds.top, bounds.left + currentSize, bounds.top + currentSize);
+            path.addRoundRect(rect, corners, Path.Direction.CCW);
+            matrix.reset();
+            matrix.postRotate(-45, bounds.left + halfSize, bounds.top + halfSize);
+            matrix.postTranslate(geometry[SeekBarMath.MARKER_TRANSLATE_X], 0);
+            matrix.postTranslate(0, geometry[SeekBarMath.MARKER_TRANSLATE_Y]);
+            path.transform(matrix);
+        } finally {
+            TraceCompat.endSection();
+        }
     }
 
     private void updateAnimation(float factor) {
         float initial = mAnimationInitialValue;
         float destination = mReverse ? 0f : 1f;
         mCurrentScale = initial + (destination - initial) * factor;
-        computePath(getBounds());
+        updateKeyframe(getBounds());
         invalidateSelf();
     }
 
     public void animateToPressed() {
-        unscheduleSelf(mUpdater);
+        AnimationClock.getInstance().removeFrameCallback(mUpdater);
         mReverse = false;
+        endAnimationTrace();
         if (mCurrentScale < 1) {
             mRunning = true;
+            beginAnimationTrace(TRACE_OPEN);
             mAnimationInitialValue = mCurrentScale;
             float durationFactor = 1f - mCurrentScale;
             mDuration = (int) (ANIMATION_DURATION * durationFactor);
-            mStartTime = SystemClock.uptimeMillis();
-            scheduleSelf(mUpdater, mStartTime + FRAME_DURATION);
+            AnimationClock clock = AnimationClock.getInstance();
+            mStartTime = clock.now();
+            clock.addFrameCallback(mUpdater);
         } else {
             notifyFinishedToListener();
         }
@@ -165,43 +235,63 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
 
     public void animateToNormal() {
         mReverse = true;
-        unscheduleSelf(mUpdater);
+        AnimationClock.getInstance().removeFrameCallback(mUpdater);
+        endAnimationTrace();
         if (mCurrentScale > 0) {
             mRunning = true;
+            beginAnimationTrace(TRACE_CLOSE);
             mAnimationInitialValue = mCurrentScale;
             float durationFactor = 1f - mCurrentScale;
             mDuration = ANIMATION_DURATION - (int) (ANIMATION_DURATION * durationFactor);
-            mStartTime = SystemClock.uptimeMillis();
-            scheduleSelf(mUpdater, mStartTime + FRAME_DURATION);
+            AnimationClock clock = AnimationClock.getInstance();
+            mStartTime = clock.now();
+            clock.addFrameCallback(mUpdater);
         } else {
             notifyFinishedToListener();
         }
     }
 
-    private final Runnable mUpdater = new Runnable() {
+    private final AnimationClock.FrameCallback mUpdater = new AnimationClock.FrameCallback() {
 
         @Override
-        public void run() {
+        public void onAnimationFrame(long frameTimeMillis) {
 
-            long currentTime = SystemClock.uptimeMillis();
-            long diff = currentTime - mStartTime;
+            //The frame time can be a bit older than our start time
+            long diff = Math.max(0, frameTimeMillis - mStartTime);
             if (diff < mDuration) {
                 float interpolation = mInterpolator.getInterpolation((float) diff / (float) mDuration);
-                scheduleSelf(mUpdater, currentTime + FRAME_DURATION);
                 updateAnimation(interpolation);
             } else {
-                unscheduleSelf(mUpdater);
+                AnimationClock.getInstance().removeFrameCallback(mUpdater);
                 mRunning = false;
                 updateAnimation(1f);
+                endAnimationTrace();
                 notifyFinishedToListener();
             }
         }
     };
 
+    private void beginAnimationTrace(String sectionName) {
+        if (TraceCompat.beginAsyncSection(sectionName, System.identityHashCode(this))) {
+            mTracedAnimation = sectionName;
+        }
+    }
+
+    private void endAnimationTrace() {
+        if (mTracedAnimation != null) {
+            TraceCompat.endAsyncSection(mTracedAnimation, System.identityHashCode(this));
+            mTracedAnimation = null;
+        }
+    }
+
     public void setMarkerListener(MarkerAnimationListener listener) {
         mMarkerListener = listener;
     }
 
+    public void setOnShapeChangeListener(OnShapeChangeListener listener) {
+        mShapeListener = listener;
+    }
+
     private void notifyFinishedToListener() {
         if (mMarkerListener != null) {
             if (mReverse) {
@@ -219,7 +309,8 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
 
     @Override
     public void stop() {
-        unscheduleSelf(mUpdater);
+        AnimationClock.getInstance().removeFrameCallback(mUpdater);
+        endAnimationTrace();
     }
 
     @Override
@@ -228,12 +319,7 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
     }
 
     private static int blendColors(int color1, int color2, float factor) {
-        final float inverseFactor = 1f - factor;
-        float a = (Color.alpha(color1) * factor) + (Color.alpha(color2) * inverseFactor);
-        float r = (Color.red(color1) * factor) + (Color.red(color2) * inverseFactor);
-        float g = (Color.green(color1) * factor) + (Color.green(color2) * inverseFactor);
-        float b = (Color.blue(color1) * factor) + (Color.blue(color2) * inverseFactor);
-        return Color.argb((int) a, (int) r, (int) g, (int) b);
+        return SeekBarMath.blendColors(color1, color2, factor);
     }
 
 
@@ -246,4 +332,11 @@ public class MarkerDrawable extends StateDrawable implements Animatable {
 
         public void onOpeningComplete();
     }
+
+    /**
+     * Listener to know when {@link #getPath()} changes its shape, for example to update an Outline
+     */
+    public interface OnShapeChangeListener {
+        public void onShapeChanged(MarkerDrawable drawable);
+    }
 }
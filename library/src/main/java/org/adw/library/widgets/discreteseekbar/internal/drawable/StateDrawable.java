@@ -81,6 +81,20 @@ public abstract class StateDrawable extends Drawable {
         doDraw(canvas, mPaint);
     }
 
+    /**
+     * @return the color for the current Drawable State
+     */
+    int getCurrentColor() {
+        return mCurrentColor;
+    }
+
+    /**
+     * @return true if the pixels we draw completely hide whatever is below them
+     */
+    public boolean isOpaque() {
+        return modulateAlpha(Color.alpha(mCurrentColor)) == 255;
+    }
+
     public void setColorStateList(@NonNull ColorStateList tintStateList) {
         mTintStateList = tintStateList;
         mCurrentColor = tintStateList.getDefaultColor();
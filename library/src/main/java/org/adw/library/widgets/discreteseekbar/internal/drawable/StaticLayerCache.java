@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.drawable;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.os.Build;
+
+/**
+ * Keeps a recorded copy of the parts of the DiscreteSeekBar that don't change while dragging:
+ * the track and the dots.
+ * <p>
+ * Each part is recorded once and then just composited on every frame. It's recorded again only when
+ * its bounds, its current color or (for the dots) their positions change.
+ * </p>
+ * <p>
+ * On API>=23 we record into a {@link android.graphics.Picture}, as hardware accelerated canvases can draw them.
+ * On older APIs we render into a {@link android.graphics.Bitmap}.
+ * </p>
+ *
+ * @hide
+ */
+public class StaticLayerCache {
+    private final Layer mTrackLayer = createLayer();
+    private final Layer mDotsLayer = createLayer();
+
+    private static Layer createLayer() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return new PictureLayer();
+        } else {
+            return new BitmapLayer();
+        }
+    }
+
+    public void drawTrack(Canvas canvas, TrackRectDrawable track) {
+        mTrackLayer.draw(canvas, track, track.getCurrentColor(), 0, 0);
+    }
+
+    public void drawDots(Canvas canvas, TrackDotsDrawable dots) {
+        int outset = (int) Math.ceil(dots.getDotRadius());
+        mDotsLayer.draw(canvas, dots, dots.getCurrentColor(), dots.getPointsGeneration(), outset);
+    }
+
+    /**
+     * Releases the recorded layers. They'll be recorded again on the next draw call
+     */
+    public void release() {
+        mTrackLayer.release();
+        mDotsLayer.release();
+    }
+
+    private static abstract class Layer {
+        //The cache key
+        final Rect mBounds = new Rect();
+        int mColor;
+        int mConfig;
+        boolean mValid;
+        private final Rect mTempRect = new Rect();
+
+        void draw(Canvas canvas, StateDrawable drawable, int color, int config, int outset) {
+            final Rect bounds = mTempRect;
+            drawable.copyBounds(bounds);
+            if (outset > 0) {
+                //Things like the dots are drawn outside the bounds
+                int centerY = bounds.centerY();
+                bounds.union(bounds.left - outset, centerY - outset, bounds.right + outset, centerY + outset);
+            }
+            if (bounds.isEmpty()) {
+                return;
+            }
+            if (!mValid || !bounds.equals(mBounds) || color != mColor || config != mConfig) {
+                mBounds.set(bounds);
+                mColor = color;
+                mConfig = config;
+                mValid = record(drawable, bounds);
+            }
+            if (mValid) {
+                drawRecorded(canvas, mBounds);
+            } else {
+                drawable.draw(canvas);
+            }
+        }
+
+        void release() {
+            mValid = false;
+        }
+
+        /**
+         * Records the drawable into the layer. The layer origin must be placed at bounds.left, bounds.top
+         *
+         * @return true if the drawable could be recorded
+         */
+        abstract boolean record(StateDrawable drawable, Rect bounds);
+
+        abstract void drawRecorded(Canvas canvas, Rect bounds);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static class PictureLayer extends Layer {
+        private Picture mPicture;
+
+        @Override
+        boolean record(StateDrawable drawable, Rect bounds) {
+            if (mPicture == null) {
+                mPicture = new Picture();
+            }
+            Canvas canvas = mPicture.beginRecording(bounds.width(), bounds.height());
+            canvas.translate(-bounds.left, -bounds.top);
+            drawable.draw(canvas);
+            mPicture.endRecording();
+            return true;
+        }
+
+        @Override
+        void drawRecorded(Canvas canvas, Rect bounds) {
+            int count = canvas.save();
+            canvas.translate(bounds.left, bounds.top);
+            canvas.drawPicture(mPicture);
+            canvas.restoreToCount(count);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            mPicture = null;
+        }
+    }
+
+    private static class BitmapLayer extends Layer {
+        private Bitmap mBitmap;
+        private Canvas mCanvas;
+
+        @Override
+        boolean record(StateDrawable drawable, Rect bounds) {
+            int width = bounds.width();
+            int height = bounds.height();
+            if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+                releaseBitmap();
+                try {
+                    mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                } catch (OutOfMemoryError e) {
+                    //Not worth crashing for this, we'll just draw without cache
+                    return false;
+                }
+                mCanvas = new Canvas(mBitmap);
+            } else {
+                mBitmap.eraseColor(Color.TRANSPARENT);
+            }
+            int count = mCanvas.save();
+            mCanvas.translate(-bounds.left, -bounds.top);
+            drawable.draw(mCanvas);
+            mCanvas.restoreToCount(count);
+            return true;
+        }
+
+        @Override
+        void drawRecorded(Canvas canvas, Rect bounds) {
+            canvas.drawBitmap(mBitmap, bounds.left, bounds.top, null);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            releaseBitmap();
+        }
+
+        private void releaseBitmap() {
+            if (mBitmap != null) {
+                mBitmap.recycle();
+                mBitmap = null;
+                mCanvas = null;
+            }
+        }
+    }
+}
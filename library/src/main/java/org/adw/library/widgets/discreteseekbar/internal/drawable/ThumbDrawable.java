@@ -21,9 +21,10 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Animatable;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+
 /**
  * <h1>HACK</h1>
  * <p>
@@ -42,6 +43,8 @@ import android.support.annotation.NonNull;
 public class ThumbDrawable extends StateDrawable implements Animatable {
     //The current size for this drawable. Must be converted to real DPs
     public static final int DEFAULT_SIZE_DP = 12;
+    //Delay before hiding the thumb, to give the Marker time to appear
+    private static final int OPEN_DELAY = 100;
     private final int mSize;
     private boolean mOpen;
     private boolean mRunning;
@@ -71,20 +74,22 @@ public class ThumbDrawable extends StateDrawable implements Animatable {
     }
 
     public void animateToPressed() {
-        scheduleSelf(opener, SystemClock.uptimeMillis() + 100);
+        AnimationClock.getInstance().postFrameCallbackDelayed(opener, OPEN_DELAY);
         mRunning = true;
     }
 
     public void animateToNormal() {
         mOpen = false;
         mRunning = false;
-        unscheduleSelf(opener);
+        //Cancels the pending opener, if any
+        AnimationClock.getInstance().removeFrameCallback(opener);
         invalidateSelf();
     }
 
-    private Runnable opener = new Runnable() {
+    //We hide the thumb on a frame boundary, so it's synced with the Marker drawing
+    private AnimationClock.FrameCallback opener = new AnimationClock.FrameCallback() {
         @Override
-        public void run() {
+        public void onAnimationFrame(long frameTimeMillis) {
             mOpen = true;
             invalidateSelf();
             mRunning = false;
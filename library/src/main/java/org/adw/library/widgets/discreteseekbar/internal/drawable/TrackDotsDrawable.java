@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.drawable;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+
+import org.adw.library.widgets.discreteseekbar.internal.ScaleLookup;
+
+/**
+ * {@link org.adw.library.widgets.discreteseekbar.internal.drawable.StateDrawable} implementation
+ * to draw one dot per step along the track.
+ * <p>
+ * The dot positions are computed only when the bounds or the amount of steps change,
+ * and they're all drawn with a single {@link android.graphics.Canvas#drawPoints(float[], int, int, android.graphics.Paint)} call.
+ * </p>
+ * <p>
+ * If the dots would be closer than the minimum spacing only every Nth step gets a dot,
+ * because on big ranges they just become a solid line anyway.
+ * </p>
+ *
+ * @hide
+ */
+public class TrackDotsDrawable extends StateDrawable {
+    private final float mDotRadius;
+    private final float mMinSpacing;
+    private int mSteps = 1;
+    //x,y pairs for every dot
+    private float[] mPoints = new float[0];
+    private int mPointCount;
+    //Non linear scales place the dots using the lookup tables
+    private ScaleLookup mScaleLookup;
+    private boolean mMirrored;
+    //Changes every time the dots are placed again, so recorded copies know they're stale
+    private int mPointsGeneration;
+
+    /**
+     * @param tintStateList the color of the dots
+     * @param dotRadius     the radius of every dot
+     * @param minSpacing    minimum distance between the centers of two dots
+     */
+    public TrackDotsDrawable(@NonNull ColorStateList tintStateList, float dotRadius, float minSpacing) {
+        super(tintStateList);
+        mDotRadius = dotRadius;
+        mMinSpacing = minSpacing;
+    }
+
+    /**
+     * Sets the amount of steps (MAX-MIN) the track is divided in
+     */
+    public void setSteps(int steps) {
+        steps = Math.max(1, steps);
+        if (steps != mSteps) {
+            mSteps = steps;
+            computePoints(getBounds());
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Places the dots following a non linear scale.
+     * The lookup must be already updated for the track width
+     *
+     * @param lookup   the scale lookup or null for a linear scale
+     * @param mirrored if the track is mirrored (RTL)
+     */
+    public void setScaleLookup(ScaleLookup lookup, boolean mirrored) {
+        mScaleLookup = lookup;
+        mMirrored = mirrored;
+        computePoints(getBounds());
+        invalidateSelf();
+    }
+
+    /**
+     * @return a number that changes every time the dot positions are computed again
+     */
+    int getPointsGeneration() {
+        return mPointsGeneration;
+    }
+
+    float getDotRadius() {
+        return mDotRadius;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        computePoints(bounds);
+    }
+
+    private void computePoints(Rect bounds) {
+        mPointsGeneration++;
+        final int width = bounds.width();
+        final int steps = mSteps;
+        if (width <= 0) {
+            mPointCount = 0;
+            return;
+        }
+        if (mScaleLookup != null) {
+            computeScaledPoints(bounds, mScaleLookup);
+            return;
+        }
+        float spacing = (float) width / steps;
+        int stride = 1;
+        if (spacing < mMinSpacing) {
+            stride = (int) Math.ceil(mMinSpacing / spacing);
+        }
+        int count = steps / stride + 1;
+        //If the stride doesn't divide the steps, MAX needs one more dot
+        final boolean addLast = steps % stride != 0;
+        final int size = addLast ? count + 1 : count;
+        if (mPoints.length < size * 2) {
+            mPoints = new float[size * 2];
+        }
+        final float[] points = mPoints;
+        final float y = bounds.exactCenterY();
+        //Compute every position from its index so we don't accumulate float errors
+        for (int i = 0; i < count; i++) {
+            long step = (long) i * stride;
+            points[i * 2] = bounds.left + (float) ((double) width * step / steps);
+            points[i * 2 + 1] = y;
+        }
+        if (addLast) {
+            //Too close to the previous dot, it takes its place
+            if (count > 1 && bounds.right - points[(count - 1) * 2] < mMinSpacing) {
+                count--;
+            }
+            points[count * 2] = bounds.right;
+            points[count * 2 + 1] = y;
+            count++;
+        }
+        mPointCount = count;
+    }
+
+    private void computeScaledPoints(Rect bounds, ScaleLookup lookup) {
+        final int width = bounds.width();
+        final int min = lookup.getMin();
+        final int max = lookup.getMax();
+        //Dots can't be closer than mMinSpacing, so this is the max amount of them
+        int maxCount = (int) (width / mMinSpacing) + 2;
+        if (mPoints.length < maxCount * 2) {
+            mPoints = new float[maxCount * 2];
+        }
+        final float[] points = mPoints;
+        final float y = bounds.exactCenterY();
+        int count = 0;
+        int value = min;
+        while (count < maxCount) {
+            float pixel = lookup.pixelOf(value);
+            points[count * 2] = mMirrored ? bounds.right - pixel : bounds.left + pixel;
+            points[count * 2 + 1] = y;
+            count++;
+            if (value >= max) {
+                break;
+            }
+            //Jump straight to the first value far enough from this one
+            float target = pixel + mMinSpacing;
+            int next = Math.max(value + 1, lookup.valueAt((int) Math.ceil(target)));
+            while (next < max && lookup.pixelOf(next) < target) {
+                next++;
+            }
+            if (lookup.pixelOf(next) < target) {
+                //Not enough room for another dot
+                break;
+            }
+            value = next;
+        }
+        mPointCount = count;
+    }
+
+    @Override
+    void doDraw(Canvas canvas, Paint paint) {
+        if (mPointCount > 0) {
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            paint.setStrokeWidth(mDotRadius * 2);
+            canvas.drawPoints(mPoints, 0, mPointCount * 2, paint);
+        }
+    }
+}
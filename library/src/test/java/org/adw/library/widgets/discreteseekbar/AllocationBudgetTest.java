@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar;
+
+import android.app.Activity;
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.compat.ManualAnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.drawable.AlmostRippleDrawable;
+import org.adw.library.widgets.discreteseekbar.internal.drawable.MarkerDrawable;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure the hot paths don't start allocating memory.
+ * <p>
+ * It measures the bytes allocated per simulated {@link MotionEvent#ACTION_MOVE} going through
+ * {@link DiscreteSeekBar#onTouchEvent(MotionEvent)} (updateDragging, setProgress, updateProgressMessage and updateThumbPos)
+ * and per {@link MarkerDrawable} and {@link AlmostRippleDrawable} animation frame, once everything is warmed up.
+ * The test fails if any of them goes over its budget.
+ * </p>
+ * <p>
+ * Budgets are bytes per operation, configured in the library build.gradle and passed as
+ * {@code allocationBudget.<name>} system properties. They can be overridden from the command line
+ * with {@code -PallocationBudget.<name>=<bytes>}.
+ * </p>
+ * <p>
+ * Values are amortized over many operations, so one-off allocations (like growing a buffer)
+ * don't count, but anything allocated on every operation does.
+ * </p>
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AllocationBudgetTest {
+    private static final int WIDTH = 1080;
+    private static final int WARMUP = 500;
+    private static final int OPERATIONS = 5000;
+    private static final long FRAME_MS = 16;
+
+    private AllocationCounter mCounter;
+    private ManualAnimationClock mClock;
+
+    @Before
+    public void setUp() {
+        mCounter = new AllocationCounter();
+        Assume.assumeTrue("This JVM can't count allocations", mCounter.isSupported());
+        mClock = new ManualAnimationClock(SystemClock.uptimeMillis());
+        AnimationClock.setInstance(mClock);
+    }
+
+    @After
+    public void tearDown() {
+        AnimationClock.setInstance(null);
+    }
+
+    @Test
+    public void dragMove() {
+        checkDragMove("dragMove", false);
+    }
+
+    @Test
+    public void dragMoveWithIndicator() {
+        checkDragMove("dragMoveWithIndicator", true);
+    }
+
+    @Test
+    public void markerFrame() {
+        MarkerDrawable marker = new MarkerDrawable(ColorStateList.valueOf(Color.RED), 36);
+        marker.setBounds(0, 0, 120, 120);
+        //Open and close once so every keyframe gets computed
+        animateMarker(marker, true);
+        animateMarker(marker, false);
+
+        long frames = 0;
+        mCounter.start();
+        while (frames < OPERATIONS) {
+            frames += animateMarker(marker, true);
+            frames += animateMarker(marker, false);
+        }
+        checkBudget("markerFrame", mCounter.stop(), frames);
+    }
+
+    @Test
+    public void rippleFrame() {
+        AlmostRippleDrawable ripple = new AlmostRippleDrawable(ColorStateList.valueOf(Color.RED));
+        ripple.setBounds(0, 0, 120, 120);
+        animateRipple(ripple, true);
+        animateRipple(ripple, false);
+
+        long frames = 0;
+        mCounter.start();
+        while (frames < OPERATIONS) {
+            frames += animateRipple(ripple, true);
+            frames += animateRipple(ripple, false);
+        }
+        checkBudget("rippleFrame", mCounter.stop(), frames);
+    }
+
+    private void checkDragMove(String name, boolean indicator) {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        DiscreteSeekBar seekBar = new DiscreteSeekBar(activity);
+        seekBar.setMin(0);
+        seekBar.setMax(1000);
+        seekBar.setIndicatorPopupEnabled(indicator);
+        activity.setContentView(seekBar, new FrameLayout.LayoutParams(WIDTH, FrameLayout.LayoutParams.WRAP_CONTENT));
+        seekBar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        seekBar.layout(0, 0, seekBar.getMeasuredWidth(), seekBar.getMeasuredHeight());
+
+        long now = SystemClock.uptimeMillis();
+        float y = seekBar.getHeight() / 2f;
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 0, y, 0);
+        seekBar.onTouchEvent(down);
+        down.recycle();
+        //The indicator is shown with a delay, and then it animates open
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        runFrames();
+        assertEquals(indicator, seekBar.isIndicatorShowing());
+        //A single event moved around, so the test itself doesn't allocate
+        MotionEvent move = MotionEvent.obtain(now, now, MotionEvent.ACTION_MOVE, 0, y, 0);
+        for (int i = 0; i < WARMUP; i++) {
+            move(seekBar, move, i, y);
+        }
+
+        mCounter.start();
+        for (int i = 0; i < OPERATIONS; i++) {
+            move(seekBar, move, i, y);
+        }
+        long bytes = mCounter.stop();
+
+        MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, 0, y, 0);
+        seekBar.onTouchEvent(up);
+        up.recycle();
+        move.recycle();
+        activity.finish();
+        checkBudget(name, bytes, OPERATIONS);
+    }
+
+    private static void move(DiscreteSeekBar seekBar, MotionEvent move, int index, float y) {
+        //Sweep the whole track back and forth, so the value changes on every move
+        int position = index % (2 * WIDTH);
+        move.setLocation(Math.min(position, 2 * WIDTH - position), y);
+        seekBar.onTouchEvent(move);
+    }
+
+    /**
+     * Runs the marker animation until it finishes
+     *
+     * @return the amount of frames
+     */
+    private int animateMarker(MarkerDrawable marker, boolean open) {
+        if (open) {
+            marker.animateToPressed();
+        } else {
+            marker.animateToNormal();
+        }
+        return runFrames();
+    }
+
+    private int animateRipple(AlmostRippleDrawable ripple, boolean pressed) {
+        if (pressed) {
+            ripple.animateToPressed();
+        } else {
+            ripple.animateToNormal();
+        }
+        return runFrames();
+    }
+
+    private int runFrames() {
+        int frames = 0;
+        while (mClock.advance(FRAME_MS)) {
+            frames++;
+        }
+        return frames;
+    }
+
+    private static void checkBudget(String name, long bytes, long operations) {
+        long budget = Long.parseLong(System.getProperty("allocationBudget." + name, "0"));
+        //Compare the totals, dividing would round anything under one byte per operation down to 0
+        assertTrue(name + " allocated " + bytes + " bytes in " + operations + " operations, the budget is "
+                + budget + " bytes per operation", bytes <= budget * operations);
+    }
+}
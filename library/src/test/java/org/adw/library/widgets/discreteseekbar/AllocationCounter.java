@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the current thread, using the HotSpot specific
+ * {@link com.sun.management.ThreadMXBean}.
+ */
+public class AllocationCounter {
+    private final com.sun.management.ThreadMXBean mBean;
+    private final long mThreadId;
+    //Bytes allocated by reading the counter itself
+    private final long mOverhead;
+    private long mStart;
+
+    public AllocationCounter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            mBean = (com.sun.management.ThreadMXBean) bean;
+            mBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            mBean = null;
+        }
+        mThreadId = Thread.currentThread().getId();
+        mOverhead = calibrate();
+    }
+
+    private long calibrate() {
+        if (mBean == null) {
+            return 0;
+        }
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = mBean.getThreadAllocatedBytes(mThreadId);
+            long end = mBean.getThreadAllocatedBytes(mThreadId);
+            overhead = Math.min(overhead, end - start);
+        }
+        return overhead;
+    }
+
+    /**
+     * @return true if the JVM can count allocations
+     */
+    public boolean isSupported() {
+        return mBean != null;
+    }
+
+    public void start() {
+        if (mBean != null) {
+            mStart = mBean.getThreadAllocatedBytes(mThreadId);
+        }
+    }
+
+    /**
+     * @return the bytes allocated since {@link #start()} or -1 if not supported
+     */
+    public long stop() {
+        if (mBean == null) {
+            return -1;
+        }
+        long end = mBean.getThreadAllocatedBytes(mThreadId);
+        return Math.max(0, end - mStart - mOverhead);
+    }
+}
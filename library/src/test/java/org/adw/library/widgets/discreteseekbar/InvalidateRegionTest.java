@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.compat.ManualAnimationClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the region invalidated when the thumb moves: it must cover the old and new thumb
+ * (plus the ripple around them) and the part of the scrubber that changed, and nothing at all
+ * when the thumb doesn't move.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class InvalidateRegionTest {
+    private static final int WIDTH = 1080;
+
+    private Activity mActivity;
+    private RecordingSeekBar mSeekBar;
+
+    @Before
+    public void setUp() {
+        AnimationClock.setInstance(new ManualAnimationClock(0));
+        mActivity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        mSeekBar = new RecordingSeekBar(mActivity);
+    }
+
+    @After
+    public void tearDown() {
+        mActivity.finish();
+        AnimationClock.setInstance(null);
+    }
+
+    @Test
+    public void smallMoveInvalidatesAroundTheThumb() {
+        layout(0, 1000, 500);
+        Rect oldThumb = thumbBounds();
+        mSeekBar.setProgress(501);
+        Rect newThumb = thumbBounds();
+
+        Rect dirty = mSeekBar.takeSingleInvalidate();
+        assertTrue(newThumb.left > oldThumb.left);
+        assertCoversThumbs(dirty, oldThumb, newThumb);
+        //Only the thumb, the ripple and the pixel or two it moved
+        assertTrue("Invalidated " + dirty, dirty.width() <= newThumb.right - oldThumb.left + 2 * addedTouchBounds());
+    }
+
+    @Test
+    public void largeJumpInvalidatesTheWholeScrubberChange() {
+        layout(0, 1000, 0);
+        Rect oldThumb = thumbBounds();
+        Rect oldScrubber = scrubberBounds();
+        mSeekBar.setProgress(1000);
+        Rect newThumb = thumbBounds();
+        Rect newScrubber = scrubberBounds();
+
+        Rect dirty = mSeekBar.takeSingleInvalidate();
+        assertCoversThumbs(dirty, oldThumb, newThumb);
+        assertTrue("Invalidated " + dirty, dirty.left <= oldScrubber.right);
+        assertTrue("Invalidated " + dirty, dirty.right >= newScrubber.right);
+        assertTrue("Invalidated " + dirty, dirty.top <= newScrubber.top && dirty.bottom >= newScrubber.bottom);
+    }
+
+    @Test
+    public void rtlMoveInvalidatesAroundTheMirroredThumb() {
+        ViewCompat.setLayoutDirection(mSeekBar, ViewCompat.LAYOUT_DIRECTION_RTL);
+        layout(0, 1000, 500);
+        assertTrue(mSeekBar.isRtl());
+        Rect oldThumb = thumbBounds();
+        Rect oldScrubber = scrubberBounds();
+        mSeekBar.setProgress(600);
+        Rect newThumb = thumbBounds();
+        Rect newScrubber = scrubberBounds();
+
+        Rect dirty = mSeekBar.takeSingleInvalidate();
+        //Growing the progress moves the thumb and the scrubber start to the left
+        assertTrue(newThumb.left < oldThumb.left);
+        assertTrue(newScrubber.left < oldScrubber.left);
+        assertEquals(oldScrubber.right, newScrubber.right);
+        assertCoversThumbs(dirty, oldThumb, newThumb);
+        assertTrue("Invalidated " + dirty, dirty.left <= newScrubber.left && dirty.right >= oldScrubber.left);
+        //The fixed end of the scrubber doesn't need a redraw
+        assertTrue("Invalidated " + dirty, dirty.right < oldScrubber.right);
+    }
+
+    @Test
+    public void noMoveInvalidatesNothing() {
+        layout(0, 1000, 500);
+        mSeekBar.setProgress(500);
+        assertEquals(0, mSeekBar.mInvalidated.size());
+
+        //The value changes but the thumb stays on the same pixel
+        layout(0, 100000, 50000);
+        Rect oldThumb = thumbBounds();
+        mSeekBar.setProgress(50001);
+        assertEquals(oldThumb, thumbBounds());
+        assertEquals(0, mSeekBar.mInvalidated.size());
+    }
+
+    private void layout(int min, int max, int progress) {
+        mSeekBar.setMin(min);
+        mSeekBar.setMax(max);
+        mSeekBar.setProgress(progress);
+        if (mSeekBar.getParent() == null) {
+            mActivity.setContentView(mSeekBar, new FrameLayout.LayoutParams(WIDTH, FrameLayout.LayoutParams.WRAP_CONTENT));
+        }
+        mSeekBar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mSeekBar.layout(0, 0, mSeekBar.getMeasuredWidth(), mSeekBar.getMeasuredHeight());
+        mSeekBar.mInvalidated.clear();
+    }
+
+    private void assertCoversThumbs(Rect dirty, Rect oldThumb, Rect newThumb) {
+        int added = addedTouchBounds();
+        Rect expected = new Rect(oldThumb);
+        expected.union(newThumb);
+        expected.inset(-added, -added);
+        assertTrue("Invalidated " + dirty + " doesn't cover " + expected, dirty.contains(expected));
+    }
+
+    private Rect thumbBounds() {
+        return new Rect(((Drawable) field("mThumb")).getBounds());
+    }
+
+    private Rect scrubberBounds() {
+        return new Rect(((Drawable) field("mScrubber")).getBounds());
+    }
+
+    private int addedTouchBounds() {
+        return (Integer) field("mAddedTouchBounds");
+    }
+
+    private Object field(String name) {
+        try {
+            Field field = DiscreteSeekBar.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(mSeekBar);
+        } catch (NoSuchFieldException e) {
+            throw new AssertionError(e);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class RecordingSeekBar extends DiscreteSeekBar {
+        final List<Rect> mInvalidated = new ArrayList<Rect>();
+
+        RecordingSeekBar(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate(Rect dirty) {
+            mInvalidated.add(new Rect(dirty));
+            super.invalidate(dirty);
+        }
+
+        Rect takeSingleInvalidate() {
+            assertEquals(1, mInvalidated.size());
+            return mInvalidated.remove(0);
+        }
+    }
+}
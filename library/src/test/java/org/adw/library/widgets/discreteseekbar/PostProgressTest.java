@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.compat.ManualAnimationClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PostProgressTest {
+    private static final int WIDTH = 1080;
+    private static final long FRAME_MS = 16;
+
+    private ManualAnimationClock mClock;
+    private Activity mActivity;
+    private DiscreteSeekBar mSeekBar;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualAnimationClock(SystemClock.uptimeMillis());
+        AnimationClock.setInstance(mClock);
+        mActivity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        mSeekBar = new DiscreteSeekBar(mActivity);
+        mSeekBar.setMin(0);
+        mSeekBar.setMax(100);
+        mActivity.setContentView(mSeekBar, new FrameLayout.LayoutParams(WIDTH, FrameLayout.LayoutParams.WRAP_CONTENT));
+        mSeekBar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mSeekBar.layout(0, 0, mSeekBar.getMeasuredWidth(), mSeekBar.getMeasuredHeight());
+    }
+
+    @After
+    public void tearDown() {
+        mActivity.finish();
+        AnimationClock.setInstance(null);
+    }
+
+    @Test
+    public void appliedOnTheNextFrame() {
+        mSeekBar.postProgress(30);
+        mSeekBar.postProgress(40);
+        assertEquals(0, mSeekBar.getProgress());
+        mClock.advance(FRAME_MS);
+        //Only the last one
+        assertEquals(40, mSeekBar.getProgress());
+    }
+
+    @Test
+    public void setProgressWinsOverOlderPostedValues() {
+        mSeekBar.postProgress(30);
+        mSeekBar.setProgress(60);
+        mClock.advance(FRAME_MS);
+        assertEquals(60, mSeekBar.getProgress());
+
+        //Values posted after it are applied
+        mSeekBar.postProgress(70);
+        mClock.advance(FRAME_MS);
+        assertEquals(70, mSeekBar.getProgress());
+    }
+
+    @Test
+    public void droppedWhileDragging() {
+        long now = SystemClock.uptimeMillis();
+        float y = mSeekBar.getHeight() / 2f;
+        //The thumb is at 0
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 0, y, 0);
+        mSeekBar.onTouchEvent(down);
+        down.recycle();
+        assertTrue(isDragging());
+        int progress = mSeekBar.getProgress();
+
+        mSeekBar.postProgress(80);
+        mClock.advance(FRAME_MS);
+        assertEquals(progress, mSeekBar.getProgress());
+        assertTrue(isDragging());
+
+        MotionEvent up = MotionEvent.obtain(now, now + FRAME_MS, MotionEvent.ACTION_UP, 0, y, 0);
+        mSeekBar.onTouchEvent(up);
+        up.recycle();
+    }
+
+    private boolean isDragging() {
+        return mSeekBar.readProgressState(new ProgressState()).isDragging();
+    }
+}
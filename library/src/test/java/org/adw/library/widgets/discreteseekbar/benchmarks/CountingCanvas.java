@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.benchmarks;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * {@link android.graphics.Canvas} counting the draw operations it receives.
+ * Only the operations used by the library drawables are counted.
+ */
+class CountingCanvas extends Canvas {
+    private int mDrawOps;
+
+    CountingCanvas(Bitmap bitmap) {
+        super(bitmap);
+    }
+
+    int getDrawOps() {
+        return mDrawOps;
+    }
+
+    void resetDrawOps() {
+        mDrawOps = 0;
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        mDrawOps++;
+        super.drawRect(r, paint);
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        mDrawOps++;
+        super.drawRect(rect, paint);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mDrawOps++;
+        super.drawRect(left, top, right, bottom, paint);
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        mDrawOps++;
+        super.drawOval(oval, paint);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mDrawOps++;
+        super.drawCircle(cx, cy, radius, paint);
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        mDrawOps++;
+        super.drawPath(path, paint);
+    }
+
+    @Override
+    public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+        mDrawOps++;
+        super.drawPoints(pts, offset, count, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mDrawOps++;
+        super.drawBitmap(bitmap, left, top, paint);
+    }
+
+    @Override
+    public void drawPicture(Picture picture) {
+        mDrawOps++;
+        super.drawPicture(picture);
+    }
+}
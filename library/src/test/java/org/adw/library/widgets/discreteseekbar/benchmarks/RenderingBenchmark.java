@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.benchmarks;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.adw.library.widgets.discreteseekbar.AllocationCounter;
+import org.adw.library.widgets.discreteseekbar.BuildConfig;
+import org.adw.library.widgets.discreteseekbar.DiscreteSeekBar;
+import org.adw.library.widgets.discreteseekbar.R;
+import org.adw.library.widgets.discreteseekbar.internal.compat.AnimationClock;
+import org.adw.library.widgets.discreteseekbar.internal.compat.ManualAnimationClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Headless rendering benchmark for {@link DiscreteSeekBar}.
+ * <p>
+ * Every configuration (range size, dots, RTL, pressed state and indicator popup) drives a series of
+ * frames where the progress changes and the DiscreteSeekBar is drawn into a {@link CountingCanvas}.
+ * For each one we report the wall time, the draw operations and the bytes allocated per frame.
+ * </p>
+ * <p>
+ * It's not part of the regular unit tests. Run it with
+ * {@code ./gradlew :library:testDebugUnitTest -PrenderBenchmark}.
+ * Results are written as JSON to {@code library/build/reports/benchmarks/rendering.json}.
+ * </p>
+ * <p>
+ * Absolute times include the Robolectric shadows, so only compare them between runs of this benchmark.
+ * Draw operations don't depend on the environment.
+ * </p>
+ * <p>
+ * Animations run on a {@link ManualAnimationClock}, so they're stepped explicitly and
+ * never produce frames in the middle of the measurements.
+ * </p>
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RenderingBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 1000;
+    private static final long FRAME_MS = 16;
+
+    private static final int[] RANGES = {100, 10000};
+
+    private ManualAnimationClock mClock;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualAnimationClock(SystemClock.uptimeMillis());
+        AnimationClock.setInstance(mClock);
+    }
+
+    @After
+    public void tearDown() {
+        AnimationClock.setInstance(null);
+    }
+
+    @Test
+    public void run() throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        boolean first = true;
+        for (int max : RANGES) {
+            for (int flags = 0; flags < 16; flags++) {
+                Configuration config = new Configuration(max, (flags & 1) != 0, (flags & 2) != 0,
+                        (flags & 4) != 0, (flags & 8) != 0);
+                Result result = measure(config);
+                if (!first) {
+                    json.append(",\n");
+                }
+                first = false;
+                json.append("  {").append(config.toJson()).append(", ").append(result.toJson()).append('}');
+            }
+        }
+        json.append("\n]\n");
+        writeOutput(json.toString());
+    }
+
+    private Result measure(Configuration config) {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.dsb_min, "0")
+                .addAttribute(R.attr.dsb_max, String.valueOf(config.max))
+                .addAttribute(R.attr.dsb_dotsEnabled, String.valueOf(config.dots))
+                .addAttribute(R.attr.dsb_mirrorForRtl, "true")
+                .addAttribute(R.attr.dsb_indicatorPopupEnabled, String.valueOf(config.popup))
+                .build();
+        DiscreteSeekBar seekBar = new DiscreteSeekBar(activity, attrs);
+        seekBar.setLayoutDirection(config.rtl ? View.LAYOUT_DIRECTION_RTL : View.LAYOUT_DIRECTION_LTR);
+        activity.setContentView(seekBar, new FrameLayout.LayoutParams(WIDTH, FrameLayout.LayoutParams.WRAP_CONTENT));
+        seekBar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        seekBar.layout(0, 0, seekBar.getMeasuredWidth(), seekBar.getMeasuredHeight());
+        if (config.pressed) {
+            seekBar.setPressed(true);
+            //Let the indicator show up and finish its animations
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            while (mClock.advance(FRAME_MS)) {
+                //Keep going until nobody asks for frames
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(seekBar.getMeasuredWidth(), seekBar.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
+        CountingCanvas canvas = new CountingCanvas(bitmap);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frame(seekBar, canvas, i, config.max);
+        }
+
+        canvas.resetDrawOps();
+        AllocationCounter allocations = new AllocationCounter();
+        allocations.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            frame(seekBar, canvas, i, config.max);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocations.stop();
+
+        activity.finish();
+        Result result = new Result();
+        result.nanosPerFrame = (double) elapsed / FRAMES;
+        result.drawOpsPerFrame = (double) canvas.getDrawOps() / FRAMES;
+        result.bytesPerFrame = allocated < 0 ? -1 : (double) allocated / FRAMES;
+        return result;
+    }
+
+    /**
+     * One frame: the progress changes, as if dragging, and the DiscreteSeekBar is drawn
+     */
+    private static void frame(DiscreteSeekBar seekBar, CountingCanvas canvas, int frame, int max) {
+        //Sweep the whole range back and forth
+        int position = frame % (2 * FRAMES);
+        int progress = (int) ((long) max * Math.min(position, 2 * FRAMES - position) / FRAMES);
+        seekBar.setProgress(progress);
+        seekBar.draw(canvas);
+    }
+
+    private static void writeOutput(String json) throws IOException {
+        String path = System.getProperty("renderBenchmark.output");
+        if (path == null) {
+            return;
+        }
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static class Configuration {
+        final int max;
+        final boolean dots;
+        final boolean rtl;
+        final boolean pressed;
+        final boolean popup;
+
+        Configuration(int max, boolean dots, boolean rtl, boolean pressed, boolean popup) {
+            this.max = max;
+            this.dots = dots;
+            this.rtl = rtl;
+            this.pressed = pressed;
+            this.popup = popup;
+        }
+
+        String toJson() {
+            return String.format(Locale.US, "\"max\": %d, \"dots\": %b, \"rtl\": %b, \"pressed\": %b, \"popup\": %b",
+                    max, dots, rtl, pressed, popup);
+        }
+    }
+
+    private static class Result {
+        double nanosPerFrame;
+        double drawOpsPerFrame;
+        double bytesPerFrame;
+
+        String toJson() {
+            return String.format(Locale.US, "\"nanosPerFrame\": %.1f, \"drawOpsPerFrame\": %.2f, \"bytesPerFrame\": %.1f",
+                    nanosPerFrame, drawOpsPerFrame, bytesPerFrame);
+        }
+    }
+}
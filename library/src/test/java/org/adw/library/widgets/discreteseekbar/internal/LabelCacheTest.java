@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LabelCacheTest {
+
+    @Test
+    public void denseRange() {
+        LabelCache cache = new LabelCache(-10, 10);
+        assertNull(cache.get(5));
+        cache.put(5, "5");
+        cache.put(-10, "-10");
+        assertEquals("5", cache.get(5));
+        assertEquals("-10", cache.get(-10));
+        assertNull(cache.get(11));
+    }
+
+    @Test
+    public void sparseRangeSlotsAreShared() {
+        LabelCache cache = new LabelCache(0, 100000);
+        cache.put(5, "5");
+        assertEquals("5", cache.get(5));
+        //Same slot, the last one wins
+        cache.put(5 + LabelCache.SPARSE_SIZE, "261");
+        assertNull(cache.get(5));
+        assertEquals("261", cache.get(5 + LabelCache.SPARSE_SIZE));
+    }
+
+    @Test
+    public void denseToSparse() {
+        LabelCache cache = new LabelCache(0, 1000);
+        cache.put(5, "5");
+        cache.reset(0, 5000);
+        assertNull(cache.get(5));
+        cache.put(5, "5");
+        assertEquals("5", cache.get(5));
+    }
+
+    @Test
+    public void sparseToDense() {
+        LabelCache cache = new LabelCache(0, 5000);
+        cache.put(5, "5");
+        cache.reset(0, 1000);
+        assertNull(cache.get(5));
+        cache.put(1000, "1000");
+        assertEquals("1000", cache.get(1000));
+    }
+
+    @Test
+    public void resetDropsLabels() {
+        LabelCache cache = new LabelCache(0, 100);
+        cache.put(5, "5");
+        cache.reset(0, 50);
+        assertNull(cache.get(5));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressChangeBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOf2() {
+        assertEquals(1, new ProgressChangeBuffer(1).getCapacity());
+        assertEquals(2, new ProgressChangeBuffer(2).getCapacity());
+        assertEquals(4, new ProgressChangeBuffer(3).getCapacity());
+        assertEquals(1024, new ProgressChangeBuffer(1000).getCapacity());
+        assertEquals(1024, new ProgressChangeBuffer(1024).getCapacity());
+        //Too big to allocate here
+        assertEquals(ProgressChangeBuffer.MAX_CAPACITY, ProgressChangeBuffer.sizeFor((1 << 29) + 1));
+        assertEquals(ProgressChangeBuffer.MAX_CAPACITY, ProgressChangeBuffer.sizeFor(ProgressChangeBuffer.MAX_CAPACITY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new ProgressChangeBuffer(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityTooBig() {
+        new ProgressChangeBuffer(ProgressChangeBuffer.MAX_CAPACITY + 1);
+    }
+
+    @Test
+    public void drainsInOrder() {
+        ProgressChangeBuffer buffer = new ProgressChangeBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.offer(i * 10, i));
+        }
+        long[] times = new long[3];
+        int[] values = new int[3];
+        //Limited by the arrays
+        assertEquals(3, buffer.drain(times, values));
+        assertEquals(20, times[2]);
+        assertEquals(2, values[2]);
+        assertEquals(2, buffer.drain(times, values));
+        assertEquals(30, times[0]);
+        assertEquals(4, values[1]);
+        assertEquals(0, buffer.drain(times, values));
+    }
+
+    @Test
+    public void dropsWhenFull() {
+        ProgressChangeBuffer buffer = new ProgressChangeBuffer(1);
+        assertTrue(buffer.offer(1, 1));
+        assertFalse(buffer.offer(2, 2));
+        assertFalse(buffer.offer(3, 3));
+        assertEquals(2, buffer.getDroppedCount());
+
+        long[] times = new long[4];
+        int[] values = new int[4];
+        assertEquals(1, buffer.drain(times, values));
+        assertEquals(1, values[0]);
+        //There's room again
+        assertTrue(buffer.offer(4, 4));
+        assertEquals(1, buffer.drain(times, values));
+        assertEquals(4, values[0]);
+        assertEquals(2, buffer.getDroppedCount());
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducerAndConsumer() throws InterruptedException {
+        final int changes = 200000;
+        final ProgressChangeBuffer buffer = new ProgressChangeBuffer(64);
+        final AtomicReference<String> error = new AtomicReference<String>();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long[] times = new long[16];
+                int[] values = new int[16];
+                int expected = 0;
+                while (expected < changes) {
+                    int count = buffer.drain(times, values);
+                    for (int i = 0; i < count; i++) {
+                        if (values[i] != expected || times[i] != expected * 3L) {
+                            error.set("Expected " + expected + " but got " + values[i] + " at " + times[i]);
+                            return;
+                        }
+                        expected++;
+                    }
+                }
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < changes; i++) {
+            //Retry instead of dropping, so every change must arrive
+            while (!buffer.offer(i * 3L, i)) {
+                Thread.yield();
+            }
+        }
+        consumer.join();
+        assertEquals(null, error.get());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublishedStateTest {
+
+    @Test
+    public void publishes() {
+        PublishedState state = new PublishedState();
+        long sequence = state.beginRead();
+        state.publish(5, 0, 10, true);
+        //A write happened in between
+        assertFalse(state.endRead(sequence));
+
+        sequence = state.beginRead();
+        assertEquals(5, state.getValue());
+        assertEquals(0, state.getMin());
+        assertEquals(10, state.getMax());
+        assertTrue(state.isDragging());
+        assertTrue(state.endRead(sequence));
+    }
+
+    @Test
+    public void unchangedStateDoesntWrite() {
+        PublishedState state = new PublishedState();
+        state.publish(5, 0, 10, false);
+        long sequence = state.beginRead();
+        state.publish(5, 0, 10, false);
+        assertTrue(state.endRead(sequence));
+    }
+
+    @Test(timeout = 30000)
+    public void readersNeverSeeTornWrites() throws InterruptedException {
+        final int writes = 200000;
+        final PublishedState state = new PublishedState();
+        state.publish(0, 1, 2, true);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicLong inconsistent = new AtomicLong();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    int value;
+                    int min;
+                    int max;
+                    boolean dragging;
+                    long sequence;
+                    do {
+                        sequence = state.beginRead();
+                        value = state.getValue();
+                        min = state.getMin();
+                        max = state.getMax();
+                        dragging = state.isDragging();
+                    } while (!state.endRead(sequence));
+                    //Every write keeps these relations
+                    if (min != value + 1 || max != value + 2 || dragging != ((value & 1) == 0)) {
+                        inconsistent.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= writes; i++) {
+            state.publish(i, i + 1, i + 2, (i & 1) == 0);
+        }
+        done.set(true);
+        reader.join();
+        assertEquals(0, inconsistent.get());
+    }
+}
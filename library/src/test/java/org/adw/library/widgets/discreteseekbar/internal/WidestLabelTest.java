@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class WidestLabelTest {
+    //Digits from the widest to the narrowest
+    private static final int[] EIGHT_WIDEST = {8, 0, 9, 6, 5, 4, 3, 2, 7, 1};
+    private static final int[] ZERO_WIDEST = {0, 8, 9, 6, 5, 4, 3, 2, 7, 1};
+
+    @Test
+    public void sameLeadingDigitOverflowingTheBound() {
+        //188 would be wider than 100, but it's out of the range
+        assertArrayEquals(new long[]{88}, candidates(EIGHT_WIDEST, 100, 1, 0, 100));
+        //288 doesn't fit either, 188 does
+        assertArrayEquals(new long[]{188, 88}, candidates(EIGHT_WIDEST, 250, 1, 0, 250));
+    }
+
+    @Test
+    public void sameLeadingDigitInsideTheBound() {
+        assertArrayEquals(new long[]{288, 188, 88}, candidates(EIGHT_WIDEST, 299, 1, 0, 299));
+    }
+
+    @Test
+    public void negativeMinimum() {
+        //-58 is below the minimum
+        assertArrayEquals(new long[]{-48, -8}, candidates(EIGHT_WIDEST, 50, -1, -50, 100));
+    }
+
+    @Test
+    public void zeroIsNeverALeadingDigit() {
+        assertArrayEquals(new long[]{-1000, -800}, candidates(ZERO_WIDEST, 1000, -1, -1000, 0));
+    }
+
+    @Test
+    public void integerMinValue() {
+        //-2888888888 doesn't fit in an int, it must be dropped and not wrapped around
+        assertArrayEquals(new long[]{-1888888888, -888888888},
+                candidates(EIGHT_WIDEST, -(long) Integer.MIN_VALUE, -1, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void integerMaxValue() {
+        assertArrayEquals(new long[]{1888888888, 888888888},
+                candidates(EIGHT_WIDEST, Integer.MAX_VALUE, 1, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void singleDigit() {
+        assertArrayEquals(new long[]{5, 4}, candidates(EIGHT_WIDEST, 5, 1, 0, 5));
+        assertArrayEquals(new long[]{9, 8}, candidates(EIGHT_WIDEST, 9, 1, 0, 9));
+    }
+
+    private static long[] candidates(int[] digits, long magnitude, int sign, int low, int high) {
+        long[] candidates = new long[WidestLabel.MAX_DIGIT_CANDIDATES];
+        int count = WidestLabel.digitCandidates(digits, magnitude, sign, low, high, candidates);
+        return Arrays.copyOf(candidates, count);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import android.os.SystemClock;
+
+import org.adw.library.widgets.discreteseekbar.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the real Choreographer based clock, not the {@link ManualAnimationClock}
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AnimationClockV16Test {
+    private static final int FRAMES = 3;
+
+    private AnimationClock mClock;
+    private int mFrames;
+    private long mLastFrameTime;
+
+    @Before
+    public void setUp() {
+        AnimationClock.setInstance(null);
+        mClock = AnimationClock.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        AnimationClock.setInstance(null);
+    }
+
+    @Test
+    public void usesChoreographer() {
+        assertTrue(mClock instanceof AnimationClockV16);
+    }
+
+    @Test
+    public void dispatchesFramesUntilRemoved() {
+        mClock.addFrameCallback(new AnimationClock.FrameCallback() {
+            @Override
+            public void onAnimationFrame(long frameTimeMillis) {
+                mFrames++;
+                mLastFrameTime = frameTimeMillis;
+                if (mFrames == FRAMES) {
+                    mClock.removeFrameCallback(this);
+                }
+            }
+        });
+        for (int i = 0; i < FRAMES * 4; i++) {
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+        assertEquals(FRAMES, mFrames);
+        //Frame times are in milliseconds, in the uptimeMillis time base
+        assertTrue(mLastFrameTime >= 0 && mLastFrameTime <= SystemClock.uptimeMillis());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal.compat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DelayedFrameCallbackTest {
+    private static final long FRAME_MS = 16;
+
+    @Test
+    public void runsOnceAfterTheDelay() {
+        ManualAnimationClock clock = new ManualAnimationClock(0);
+        CountingCallback callback = new CountingCallback();
+        clock.postFrameCallbackDelayed(callback, 100);
+        //Waiting, but nothing runs before the delay
+        for (int i = 0; i < 6; i++) {
+            assertTrue(clock.advance(FRAME_MS));
+        }
+        assertEquals(0, callback.mCalls);
+        assertTrue(clock.advance(FRAME_MS));
+        assertEquals(1, callback.mCalls);
+        assertEquals(112, callback.mFrameTime);
+        assertFalse(clock.advance(FRAME_MS));
+        assertEquals(1, callback.mCalls);
+    }
+
+    @Test
+    public void removeCancels() {
+        ManualAnimationClock clock = new ManualAnimationClock(0);
+        CountingCallback callback = new CountingCallback();
+        clock.postFrameCallbackDelayed(callback, 50);
+        clock.removeFrameCallback(callback);
+        clock.advance(100);
+        assertFalse(clock.advance(FRAME_MS));
+        assertEquals(0, callback.mCalls);
+    }
+
+    @Test
+    public void postingAgainReplacesTheDelay() {
+        ManualAnimationClock clock = new ManualAnimationClock(0);
+        CountingCallback callback = new CountingCallback();
+        clock.postFrameCallbackDelayed(callback, 20);
+        clock.postFrameCallbackDelayed(callback, 100);
+        clock.advance(50);
+        assertEquals(0, callback.mCalls);
+        clock.advance(50);
+        assertEquals(1, callback.mCalls);
+    }
+
+    @Test
+    public void severalDelays() {
+        ManualAnimationClock clock = new ManualAnimationClock(0);
+        CountingCallback late = new CountingCallback();
+        CountingCallback early = new CountingCallback();
+        clock.postFrameCallbackDelayed(late, 100);
+        clock.postFrameCallbackDelayed(early, 30);
+        clock.advance(40);
+        assertEquals(1, early.mCalls);
+        assertEquals(0, late.mCalls);
+        clock.advance(60);
+        assertEquals(1, early.mCalls);
+        assertEquals(1, late.mCalls);
+    }
+
+    private static class CountingCallback implements AnimationClock.FrameCallback {
+        int mCalls;
+        long mFrameTime;
+
+        @Override
+        public void onAnimationFrame(long frameTimeMillis) {
+            mCalls++;
+            mFrameTime = frameTimeMillis;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal.drawable;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import org.adw.library.widgets.discreteseekbar.BuildConfig;
+import org.adw.library.widgets.discreteseekbar.ValueScale;
+import org.adw.library.widgets.discreteseekbar.internal.ScaleLookup;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class StaticLayerCacheTest {
+    private static final int WIDTH = 1000;
+    private static final int STEPS = 10;
+
+    private CountingDotsDrawable mDots;
+    private StaticLayerCache mCache;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mDots = new CountingDotsDrawable();
+        mDots.setSteps(STEPS);
+        mDots.setBounds(0, 0, WIDTH, 10);
+        mCache = new StaticLayerCache();
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH + 20, 20, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void dotsAreRecordedOnce() {
+        mCache.drawDots(mCanvas, mDots);
+        mCache.drawDots(mCanvas, mDots);
+        assertEquals(1, mDots.mDraws);
+    }
+
+    @Test
+    public void scaleLookupChangeRecordsAgain() {
+        mCache.drawDots(mCanvas, mDots);
+        ScaleLookup lookup = new ScaleLookup(ValueScale.logarithmic());
+        lookup.update(0, STEPS, WIDTH);
+        //Same bounds, color and steps, but the dots moved
+        mDots.setScaleLookup(lookup, false);
+        mCache.drawDots(mCanvas, mDots);
+        assertEquals(2, mDots.mDraws);
+
+        //Mirrored for RTL
+        mDots.setScaleLookup(lookup, true);
+        mCache.drawDots(mCanvas, mDots);
+        assertEquals(3, mDots.mDraws);
+
+        mCache.drawDots(mCanvas, mDots);
+        assertEquals(3, mDots.mDraws);
+    }
+
+    private static class CountingDotsDrawable extends TrackDotsDrawable {
+        int mDraws;
+
+        CountingDotsDrawable() {
+            super(ColorStateList.valueOf(Color.RED), 2, 10);
+        }
+
+        @Override
+        void doDraw(Canvas canvas, Paint paint) {
+            mDraws++;
+            super.doDraw(canvas, paint);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Gustavo Claramunt (AnderWeb) 2014.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.adw.library.widgets.discreteseekbar.internal.drawable;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import org.adw.library.widgets.discreteseekbar.BuildConfig;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TrackDotsDrawableTest {
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void everyStep() {
+        assertArrayEquals(new float[]{0, 25, 50, 75, 100}, dotsX(4, 100, 10), DELTA);
+    }
+
+    @Test
+    public void thinnedDotsDivideTheSteps() {
+        //A dot every 2 steps
+        assertArrayEquals(new float[]{0, 20, 40, 60, 80, 100}, dotsX(10, 100, 15), DELTA);
+    }
+
+    @Test
+    public void thinnedDotsAlwaysEndAtMax() {
+        //A dot every 3 steps would stop at 90, the one at MAX replaces it as they'd be too close
+        assertArrayEquals(new float[]{0, 30, 60, 100}, dotsX(10, 100, 25), DELTA);
+    }
+
+    @Test
+    public void singleThinnedStepKeepsBothEnds() {
+        assertArrayEquals(new float[]{0, 100}, dotsX(2, 100, 150), DELTA);
+    }
+
+    private static float[] dotsX(int steps, int width, float minSpacing) {
+        TrackDotsDrawable dots = new TrackDotsDrawable(ColorStateList.valueOf(Color.RED), 1, minSpacing);
+        dots.setSteps(steps);
+        dots.setBounds(0, 0, width, 2);
+        PointsCanvas canvas = new PointsCanvas();
+        dots.draw(canvas);
+        float[] x = new float[canvas.mPoints.length / 2];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = canvas.mPoints[i * 2];
+        }
+        return x;
+    }
+
+    private static class PointsCanvas extends Canvas {
+        float[] mPoints = new float[0];
+
+        PointsCanvas() {
+            super(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+            mPoints = Arrays.copyOfRange(pts, offset, offset + count);
+        }
+    }
+}